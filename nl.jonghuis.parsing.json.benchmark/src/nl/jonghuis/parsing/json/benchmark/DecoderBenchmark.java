@@ -0,0 +1,67 @@
+package nl.jonghuis.parsing.json.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.jonghuis.parsing.json.JSONDecoder;
+import nl.jonghuis.parsing.json.JSONEncoder;
+import nl.jonghuis.parsing.json.JSONReader;
+
+/**
+ * Measures parsing each {@link Shape} into a tree, from a String and from UTF-8 bytes, and reading it token by token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecoderBenchmark {
+    @Param
+    public Shape shape;
+
+    private String json;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws Exception {
+        json = JSONEncoder.toString(shape.create());
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object parseString(Throughput throughput) throws IOException {
+        throughput.add(bytes.length);
+        return JSONDecoder.parse(json);
+    }
+
+    @Benchmark
+    public Object parseBytes(Throughput throughput) throws IOException {
+        throughput.add(bytes.length);
+        return JSONDecoder.parse(bytes);
+    }
+
+    @Benchmark
+    public void readTokens(Throughput throughput, Blackhole blackhole) throws IOException {
+        throughput.add(bytes.length);
+        JSONReader reader = new JSONReader(json);
+        JSONReader.Token token;
+        while ((token = reader.nextToken()) != null) {
+            blackhole.consume(token);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package nl.jonghuis.parsing.json.benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.jonghuis.parsing.json.JSONEncoder;
+import nl.jonghuis.parsing.json.JSONEncoder.Options;
+import nl.jonghuis.parsing.json.UnexpectedTypeException;
+
+/**
+ * Measures encoding the tree of each {@link Shape}, both compact and with the {@link Options#PRETTY} layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EncoderBenchmark {
+    @Param
+    public Shape shape;
+
+    @Param({ "false", "true" })
+    public boolean pretty;
+
+    private Object tree;
+    private EnumSet<Options> options;
+    private int size;
+
+    @Setup
+    public void setup() throws Exception {
+        tree = shape.create();
+        options = pretty ? EnumSet.of(Options.PRETTY) : EnumSet.noneOf(Options.class);
+        size = write().toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Benchmark
+    public Object encode(Throughput throughput) throws IOException, UnexpectedTypeException {
+        throughput.add(size);
+        return write();
+    }
+
+    private StringWriter write() throws IOException, UnexpectedTypeException {
+        StringWriter out = new StringWriter(size);
+        new JSONEncoder(out, options).write(tree);
+        return out;
+    }
+}
@@ -0,0 +1,109 @@
+package nl.jonghuis.parsing.json.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.jonghuis.parsing.json.JSONArray;
+import nl.jonghuis.parsing.json.JSONDecoder;
+import nl.jonghuis.parsing.json.JSONEncoder;
+import nl.jonghuis.parsing.json.NDJSONReader;
+import nl.jonghuis.parsing.json.ParallelDecoder;
+
+/**
+ * Measures parsing a file of about 30MB with the {@link ParallelDecoder} on a number of threads, both as one large
+ * array and as newline delimited JSON. The single threaded decoders on the same files are the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelDecoderBenchmark {
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private Path array;
+    private Path records;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws Exception {
+        JSONArray elements = new JSONArray();
+        for (int ix = 0; ix < 10; ix++) {
+            elements.addAll((JSONArray) Shape.LARGE.create());
+        }
+        array = Files.createTempFile("elements", ".json");
+        try (Writer out = Files.newBufferedWriter(array)) {
+            JSONEncoder.encode(elements, out);
+        }
+        records = Files.createTempFile("records", ".ndjson");
+        try (Writer out = Files.newBufferedWriter(records)) {
+            JSONEncoder.encodeRecords(elements, out);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.delete(array);
+        Files.delete(records);
+    }
+
+    @Benchmark
+    public long elements() throws Exception {
+        return pool.submit(() -> {
+            try (Stream<Object> stream = new ParallelDecoder().elements(array)) {
+                return stream.count();
+            }
+        }).get();
+    }
+
+    @Benchmark
+    public long records() throws Exception {
+        return pool.submit(() -> {
+            try (Stream<Object> stream = new ParallelDecoder().records(records)) {
+                return stream.count();
+            }
+        }).get();
+    }
+
+    @Benchmark
+    public int singleArray() throws IOException {
+        try (FileChannel channel = FileChannel.open(array)) {
+            return new JSONDecoder(channel).parseArray().size();
+        }
+    }
+
+    @Benchmark
+    public long singleRecords() throws IOException {
+        long count = 0;
+        try (NDJSONReader reader = new NDJSONReader(records)) {
+            while (reader.hasNext()) {
+                reader.next();
+                count++;
+            }
+        }
+        return count;
+    }
+}
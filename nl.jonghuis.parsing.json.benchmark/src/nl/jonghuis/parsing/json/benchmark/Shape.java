@@ -0,0 +1,125 @@
+package nl.jonghuis.parsing.json.benchmark;
+
+import java.util.Random;
+
+import nl.jonghuis.parsing.json.JSONArray;
+import nl.jonghuis.parsing.json.JSONObject;
+
+/**
+ * The kinds of documents that are used in the benchmarks. Each document is generated from a fixed seed, so every run
+ * measures exactly the same input.
+ */
+public enum Shape {
+    /** A single record of about 300 bytes, like a typical request or message */
+    SMALL {
+        @Override
+        Object create(Random random) {
+            return record(random, 0);
+        }
+    },
+    /** A list of 100 records, about 30KB */
+    MEDIUM {
+        @Override
+        Object create(Random random) {
+            return records(random, 100);
+        }
+    },
+    /** A list of 10000 records, about 3MB */
+    LARGE {
+        @Override
+        Object create(Random random) {
+            return records(random, 10000);
+        }
+    },
+    /** Mostly integers and doubles, like measurements or coordinates */
+    NUMBERS {
+        @Override
+        Object create(Random random) {
+            JSONArray result = new JSONArray();
+            for (int ix = 0; ix < 2000; ix++) {
+                result.$(new JSONArray().$(random.nextInt())
+                                        .$(random.nextLong())
+                                        .$(random.nextDouble() * 1000)
+                                        .$(random.nextGaussian() * 1e-5)
+                                        .$(random.nextInt(100)));
+            }
+            return result;
+        }
+    },
+    /** Mostly long strings, with some escapes and non-ASCII characters */
+    STRINGS {
+        @Override
+        Object create(Random random) {
+            JSONArray result = new JSONArray();
+            for (int ix = 0; ix < 500; ix++) {
+                result.$(new JSONObject().$("title", text(random, 40))
+                                         .$("body", text(random, 1000))
+                                         .$("quote", "He said \"" + text(random, 20) + "\"\n\tand left"));
+            }
+            return result;
+        }
+    },
+    /** Objects and arrays nested 100 levels deep, repeated a number of times */
+    NESTED {
+        @Override
+        Object create(Random random) {
+            JSONArray result = new JSONArray();
+            for (int ix = 0; ix < 50; ix++) {
+                Object value = random.nextInt();
+                for (int depth = 0; depth < 100; depth++) {
+                    if ((depth & 1) == 0) {
+                        value = new JSONObject().$("level", depth).$("child", value);
+                    } else {
+                        value = new JSONArray().$(depth).$(value);
+                    }
+                }
+                result.$(value);
+            }
+            return result;
+        }
+    };
+
+    private static final String WORDS = "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod"
+                                         + " tempor \u00e9t\u00e9 na\u00efve"
+                                         + " \u65e5\u672c\u8a9e \u0437\u0434\u0440\u0430\u0432\u0441\u0442\u0432\u0443\u0439";
+
+    abstract Object create(Random random);
+
+    /**
+     * @return The document as a tree of {@link JSONObject}s and {@link JSONArray}s
+     */
+    public Object create() {
+        return create(new Random(name().hashCode()));
+    }
+
+    private static JSONArray records(Random random, int count) {
+        JSONArray result = new JSONArray();
+        for (int ix = 0; ix < count; ix++) {
+            result.$(record(random, ix));
+        }
+        return result;
+    }
+
+    private static JSONObject record(Random random, int id) {
+        return new JSONObject().$("id", id)
+                               .$("uuid", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()))
+                               .$("name", text(random, 20))
+                               .$("active", random.nextBoolean())
+                               .$("balance", Math.round(random.nextDouble() * 1000000) / 100.0)
+                               .$("created", 1400000000000L + random.nextInt())
+                               .$("tags", new JSONArray().$(text(random, 8)).$(text(random, 8)).$(text(random, 8)))
+                               .$("address",
+                                  new JSONObject().$("street", text(random, 16))
+                                                  .$("city", text(random, 10))
+                                                  .$("zip", random.nextInt(100000))
+                                                  .$("location", null));
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder result = new StringBuilder(length);
+        while (result.length() < length) {
+            result.append(WORDS.charAt(random.nextInt(WORDS.length())));
+        }
+        return result.toString();
+    }
+}
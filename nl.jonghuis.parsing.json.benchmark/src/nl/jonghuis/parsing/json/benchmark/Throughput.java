@@ -0,0 +1,25 @@
+package nl.jonghuis.parsing.json.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the amount of JSON that has been processed, which JMH reports as MB/s next to the operations per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+    }
+
+    void add(int bytes) {
+        megabytes += bytes / 1e6;
+    }
+}
@@ -0,0 +1,456 @@
+package nl.jonghuis.parsing.json.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a <code>JSONCodec</code> for each class that is annotated with <code>JSONSerializable</code>. The codecs
+ * follow the same rules as the reflective binding of the JSON bundle: the properties that are written are the public
+ * getters (sorted by name) or the components of a record, and objects are created with a public constructor that
+ * accepts a <code>JSONObject</code>, the canonical constructor of a record, or a public constructor without
+ * arguments followed by the public setters.
+ *
+ * The processor only refers to the JSON bundle by name, so it is not needed at runtime.
+ */
+@SupportedAnnotationTypes(CodecProcessor.ANNOTATION)
+public class CodecProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "nl.jonghuis.parsing.json.JSONSerializable";
+
+    private static final String JSON = "nl.jonghuis.parsing.json.";
+
+    /**
+     * A property that is written with its getter, or read with its setter or as a component of a record.
+     */
+    private static final class Property {
+        final String name;
+        final String method;
+        final TypeMirror type;
+
+        Property(String name, String method, TypeMirror type) {
+            this.name = name;
+            this.method = method;
+            this.type = type;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                String problem = check(element);
+                if (problem != null) {
+                    error(element, "Can not generate a JSON codec, " + problem);
+                    continue;
+                }
+
+                try {
+                    generate((TypeElement) element);
+                } catch (IOException e) {
+                    error(element, "Could not write the JSON codec: " + e);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * @return Why no codec can be generated for the element, or null when it can
+     */
+    private static String check(Element element) {
+        if ((element.getKind() != ElementKind.CLASS) && !isRecord(element)) {
+            return "since it is not a class";
+        } else if (!((TypeElement) element).getTypeParameters().isEmpty()) {
+            return "since generic classes are not supported";
+        } else if (element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "since the class is abstract";
+        }
+
+        for (Element type = element; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            Element enclosing = type.getEnclosingElement();
+            if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+                return "since " + type + " is not public";
+            } else if ((enclosing.getKind() == ElementKind.CLASS) && !type.getModifiers().contains(Modifier.STATIC)) {
+                return "since " + type + " is not static";
+            }
+        }
+        return null;
+    }
+
+    // Records and their components do not exist in the Java version this is compiled for
+    private static boolean isRecord(Element element) {
+        return element.getKind().name().equals("RECORD");
+    }
+
+    private static boolean isRecordComponent(Element element) {
+        return element.getKind().name().equals("RECORD_COMPONENT");
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String codecName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+                                     .replace('$', '_')
+                           + "JSONCodec";
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("/**\n")
+           .append(" * Generated from {@link ").append(typeName).append("} by ")
+           .append(CodecProcessor.class.getName()).append(", do not edit.\n")
+           .append(" */\n")
+           .append("public final class ").append(codecName)
+           .append(" implements ").append(JSON).append("JSONCodec<").append(typeName).append("> {\n");
+
+        // The parameterized types of generic properties are only created once
+        StringBuilder decode = new StringBuilder();
+        StringBuilder constants = new StringBuilder();
+        generateDecode(decode, constants, type, typeName);
+        if (constants.length() > 0) {
+            out.append(constants).append('\n');
+        }
+
+        out.append("    @Override\n")
+           .append("    public java.lang.Class<").append(typeName).append("> getType() {\n")
+           .append("        return ").append(typeName).append(".class;\n")
+           .append("    }\n\n");
+
+        generateEncode(out, type, typeName);
+        out.append('\n');
+        out.append(decode).append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private void generateEncode(StringBuilder out, TypeElement type, String typeName) {
+        out.append("    @Override\n")
+           .append("    public void encode(").append(typeName).append(" value, ")
+           .append(JSON).append("JSONWriter writer)\n")
+           .append("            throws java.io.IOException, ").append(JSON).append("UnexpectedTypeException {\n")
+           .append("        writer.beginObject();\n");
+        for (Property property : getters(type)) {
+            String value = "value." + property.method + "()";
+            switch (property.type.getKind()) {
+            case SHORT:
+            case BYTE:
+                value = "(int) " + value;
+                break;
+            case CHAR:
+                value = "java.lang.String.valueOf(" + value + ")";
+                break;
+            default:
+                break;
+            }
+            out.append("        writer.name(").append(literal(property.name)).append(").value(").append(value)
+               .append(");\n");
+        }
+        out.append("        writer.endObject();\n")
+           .append("    }\n");
+    }
+
+    private void generateDecode(StringBuilder out, StringBuilder constants, TypeElement type, String typeName) {
+        out.append("    @Override\n")
+           .append("    @SuppressWarnings(\"unchecked\")\n")
+           .append("    public ").append(typeName).append(" decode(").append(JSON).append("JSONDecoder decoder)\n")
+           .append("            throws java.io.IOException, ").append(JSON).append("UnexpectedTypeException {\n");
+
+        List<ExecutableElement> constructors = new ArrayList<>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                constructors.add(constructor);
+            }
+        }
+
+        List<Property> components = isRecord(type) ? components(type) : null;
+        if (findConstructor(constructors, JSON + "JSONObject") != null) {
+            out.append("        return new ").append(typeName).append("(decoder.parseObject());\n");
+        } else if ((components != null) && (findConstructor(constructors, types(components)) != null)) {
+            for (int ix = 0; ix < components.size(); ix++) {
+                out.append("        ").append(components.get(ix).type).append(" c").append(ix).append(" = ")
+                   .append(defaultValue(components.get(ix).type)).append(";\n");
+            }
+            generateLoop(out, constants, components, "c%2$d = %1$s;");
+            out.append("        return new ").append(typeName).append('(');
+            for (int ix = 0; ix < components.size(); ix++) {
+                out.append(ix == 0 ? "" : ", ").append('c').append(ix);
+            }
+            out.append(");\n");
+        } else if ((components == null) && (findConstructor(constructors) != null)) {
+            out.append("        ").append(typeName).append(" result = new ").append(typeName).append("();\n");
+            generateLoop(out, constants, setters(type), "result.%3$s(%1$s);");
+            out.append("        return result;\n");
+        } else {
+            out.append("        throw new ").append(JSON).append("UnexpectedTypeException(")
+               .append(literal("Could not find a way to create a " + typeName)).append(");\n");
+        }
+        out.append("    }\n");
+    }
+
+    /**
+     * Generates the loop over the keys of an object, with a statement for each property that is formatted with the
+     * expression that parses the value, the index of the property and the name of its method.
+     */
+    private void generateLoop(StringBuilder out,
+                              StringBuilder constants,
+                              List<Property> properties,
+                              String statement) {
+        out.append("        decoder.beginObject();\n")
+           .append("        for (java.lang.String name = decoder.nextName(); name != null; ")
+           .append("name = decoder.nextName()) {\n")
+           .append("            switch (name) {\n");
+        for (int ix = 0; ix < properties.size(); ix++) {
+            Property property = properties.get(ix);
+            String parse = parse(property.type, "TYPE" + ix);
+            if (parse.contains("TYPE" + ix)) {
+                constants.append("    private static final java.lang.reflect.Type TYPE").append(ix).append(" = ")
+                         .append(typeExpression(property.type)).append(";\n");
+            }
+            out.append("            case ").append(literal(property.name)).append(":\n")
+               .append("                ").append(String.format(statement, parse, ix, property.method))
+               .append('\n')
+               .append("                break;\n");
+        }
+        out.append("            default:\n")
+           .append("                decoder.skipValue();\n")
+           .append("            }\n")
+           .append("        }\n");
+    }
+
+    /**
+     * @return An expression that parses a value of the type from the decoder, which refers to the constant when the
+     *         type is parameterized
+     */
+    private String parse(TypeMirror type, String constant) {
+        switch (type.getKind()) {
+        case INT:
+            return "decoder.parseInt()";
+        case LONG:
+            return "decoder.parseLong()";
+        case DOUBLE:
+            return "decoder.parseDouble()";
+        case BOOLEAN:
+            return "decoder.parseBoolean()";
+        case FLOAT:
+            return "(float) decoder.parseDouble()";
+        case SHORT:
+            return "(short) decoder.parseInt()";
+        case BYTE:
+            return "(byte) decoder.parseInt()";
+        case CHAR:
+            return "decoder.parseValue(char.class)";
+        case DECLARED:
+            if (!((DeclaredType) type).getTypeArguments().isEmpty()) {
+                return "(" + type + ") decoder.parseValue(" + constant + ")";
+            }
+            // Fall through
+        default:
+            return "decoder.parseValue(" + erasure(type) + ".class)";
+        }
+    }
+
+    /**
+     * @return An expression for the <code>java.lang.reflect.Type</code> of the type
+     */
+    private String typeExpression(TypeMirror type) {
+        if (type.getKind() == TypeKind.WILDCARD) {
+            TypeMirror bound = ((WildcardType) type).getExtendsBound();
+            return bound != null ? typeExpression(bound) : "java.lang.Object.class";
+        } else if ((type.getKind() == TypeKind.DECLARED) && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            StringBuilder expression = new StringBuilder(JSON).append("JSONCodec.parameterized(")
+                                                              .append(erasure(type))
+                                                              .append(".class");
+            for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                expression.append(", ").append(typeExpression(argument));
+            }
+            return expression.append(')').toString();
+        } else {
+            return erasure(type) + ".class";
+        }
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static String defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+        case BOOLEAN:
+            return "false";
+        case CHAR:
+            return "(char) 0";
+        default:
+            return type.getKind().isPrimitive() ? "0" : "null";
+        }
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if ((c == '"') || (c == '\\')) {
+                literal.append('\\').append(c);
+            } else if ((c < ' ') || (c > '~')) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * @return The public constructor with the given parameter types, or null when there is none
+     */
+    private ExecutableElement findConstructor(List<ExecutableElement> constructors, String... parameters) {
+        for (ExecutableElement constructor : constructors) {
+            List<? extends VariableElement> actual = constructor.getParameters();
+            boolean matches = actual.size() == parameters.length;
+            for (int ix = 0; matches && (ix < parameters.length); ix++) {
+                matches = erasure(actual.get(ix).asType()).equals(parameters[ix]);
+            }
+            if (matches) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private String[] types(List<Property> properties) {
+        String[] types = new String[properties.size()];
+        for (int ix = 0; ix < types.length; ix++) {
+            types[ix] = erasure(properties.get(ix).type);
+        }
+        return types;
+    }
+
+    private static List<Property> components(TypeElement type) {
+        List<Property> components = new ArrayList<>();
+        for (Element element : type.getEnclosedElements()) {
+            if (isRecordComponent(element)) {
+                String name = element.getSimpleName().toString();
+                components.add(new Property(name, name, element.asType()));
+            }
+        }
+        return components;
+    }
+
+    /**
+     * @return The properties to write, in the same order as the reflective binding
+     */
+    private List<Property> getters(TypeElement type) {
+        if (isRecord(type)) {
+            return components(type);
+        }
+
+        List<Property> getters = new ArrayList<>();
+        for (ExecutableElement method : methods(type)) {
+            String name = method.getSimpleName().toString();
+            if (!method.getParameters().isEmpty() || (method.getReturnType().getKind() == TypeKind.VOID)
+                || name.equals("getClass")) {
+                continue;
+            }
+            if ((name.length() >= 4) && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+                getters.add(new Property(Character.toLowerCase(name.charAt(3)) + name.substring(4),
+                                         name,
+                                         method.getReturnType()));
+            } else if ((name.length() >= 3) && name.startsWith("is")
+                       && (method.getReturnType().getKind() == TypeKind.BOOLEAN)) {
+                // The name of a boolean property includes the "is"
+                getters.add(new Property(name, name, method.getReturnType()));
+            }
+        }
+        getters.sort(Comparator.comparing(property -> property.name));
+        return getters;
+    }
+
+    private List<Property> setters(TypeElement type) {
+        Map<String, TypeMirror> getterTypes = new LinkedHashMap<>();
+        for (Property getter : getters(type)) {
+            getterTypes.put(getter.name, getter.type);
+        }
+
+        Map<String, Property> setters = new LinkedHashMap<>();
+        for (ExecutableElement method : methods(type)) {
+            String name = method.getSimpleName().toString();
+            if ((method.getParameters().size() != 1)
+                || (name.length() < 4)
+                || !name.startsWith("set")
+                || !Character.isUpperCase(name.charAt(3))) {
+                continue;
+            }
+
+            String property = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+            TypeMirror parameter = method.getParameters().get(0).asType();
+            TypeMirror getterType = getterTypes.get(property);
+            // With overloaded setters, prefer the one that takes what the getter returns
+            if (!setters.containsKey(property)
+                || ((getterType != null) && processingEnv.getTypeUtils().isSameType(parameter, getterType))) {
+                setters.put(property, new Property(property, name, parameter));
+            }
+        }
+
+        // A boolean is written with the name of its "is" getter, so it can also be read with that name
+        for (Map.Entry<String, TypeMirror> getter : getterTypes.entrySet()) {
+            String name = getter.getKey();
+            if ((getter.getValue().getKind() == TypeKind.BOOLEAN) && name.startsWith("is")) {
+                Property setter = setters.get(Character.toLowerCase(name.charAt(2)) + name.substring(3));
+                if ((setter != null) && !setters.containsKey(name)) {
+                    setters.put(name, new Property(name, setter.method, setter.type));
+                }
+            }
+        }
+        return new ArrayList<>(setters.values());
+    }
+
+    /**
+     * @return The public methods of the type that are not static, including the inherited ones from public types
+     */
+    private List<ExecutableElement> methods(TypeElement type) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils()
+                                                                             .getAllMembers(type))) {
+            if (method.getModifiers().contains(Modifier.PUBLIC)
+                && !method.getModifiers().contains(Modifier.STATIC)
+                && method.getEnclosingElement().getModifiers().contains(Modifier.PUBLIC)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+}
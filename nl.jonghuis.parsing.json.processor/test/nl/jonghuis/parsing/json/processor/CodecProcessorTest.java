@@ -0,0 +1,185 @@
+package nl.jonghuis.parsing.json.processor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import nl.jonghuis.parsing.json.JSONCodec;
+import nl.jonghuis.parsing.json.JSONDecoder;
+import nl.jonghuis.parsing.json.JSONEncoder;
+
+public class CodecProcessorTest {
+    private static final String SHAPE = "package example;\n"
+                                        + "import java.util.*;\n"
+                                        + "import nl.jonghuis.parsing.json.JSONSerializable;\n"
+                                        + "@JSONSerializable\n"
+                                        + "public class Shape {\n"
+                                        + "    public enum Kind { OPEN, CLOSED }\n"
+                                        + "    @JSONSerializable\n"
+                                        + "    public static class Point {\n"
+                                        + "        private int x; private float y;\n"
+                                        + "        public int getX() { return x; }\n"
+                                        + "        public void setX(int x) { this.x = x; }\n"
+                                        + "        public float getY() { return y; }\n"
+                                        + "        public Point setY(float y) { this.y = y; return this; }\n"
+                                        + "    }\n"
+                                        + "    private String name; private boolean visible; private char tag;\n"
+                                        + "    private Kind kind; private List<Point> points;\n"
+                                        + "    private Map<String, List<? extends Number>> groups;\n"
+                                        + "    private long[] ids;\n"
+                                        + "    public String getName() { return name; }\n"
+                                        + "    public void setName(String name) { this.name = name; }\n"
+                                        + "    public boolean isVisible() { return visible; }\n"
+                                        + "    public void setVisible(boolean visible) { this.visible = visible; }\n"
+                                        + "    public char getTag() { return tag; }\n"
+                                        + "    public void setTag(char tag) { this.tag = tag; }\n"
+                                        + "    public Kind getKind() { return kind; }\n"
+                                        + "    public void setKind(Kind kind) { this.kind = kind; }\n"
+                                        + "    public List<Point> getPoints() { return points; }\n"
+                                        + "    public void setPoints(List<Point> points) { this.points = points; }\n"
+                                        + "    public Map<String, List<? extends Number>> getGroups() {\n"
+                                        + "        return groups;\n"
+                                        + "    }\n"
+                                        + "    public void setGroups(Map<String, List<? extends Number>> groups) {\n"
+                                        + "        this.groups = groups;\n"
+                                        + "    }\n"
+                                        + "    public long[] getIds() { return ids; }\n"
+                                        + "    public void setIds(long[] ids) { this.ids = ids; }\n"
+                                        + "}\n";
+
+    private static final String FAILING = "package example;\n"
+                                          + "@nl.jonghuis.parsing.json.JSONSerializable\n"
+                                          + "public class Failing {\n"
+                                          + "    public int getBroken() { throw new IllegalStateException(); }\n"
+                                          + "}\n";
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String name, String code) {
+            super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Compiles the sources with the processor into the directory.
+     *
+     * @return The errors that were reported
+     */
+    private static List<String> compile(Path output, Source... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-classpath",
+                                             System.getProperty("java.class.path"),
+                                             "-processor",
+                                             CodecProcessor.class.getName(),
+                                             "-d",
+                                             output.toString(),
+                                             "-s",
+                                             output.toString());
+        compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(sources)).call();
+
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ENGLISH));
+            }
+        }
+        return errors;
+    }
+
+    // Deleted with everything that is generated in it after each test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path createOutput() throws IOException {
+        return folder.newFolder("codecs").toPath();
+    }
+
+    @Test
+    public void testGenerated() throws Exception {
+        Path output = createOutput();
+        List<String> errors = compile(output,
+                                      new Source("example.Shape", SHAPE),
+                                      new Source("example.Failing", FAILING));
+        Assert.assertEquals(Arrays.asList(), errors);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+                                                        getClass().getClassLoader())) {
+            Class<?> shape = loader.loadClass("example.Shape");
+            JSONCodec<?> codec = (JSONCodec<?>) loader.loadClass("example.ShapeJSONCodec").newInstance();
+            Assert.assertEquals(shape, codec.getType());
+            Assert.assertNotNull(loader.loadClass("example.Shape_PointJSONCodec"));
+
+            String json = "{\"groups\":{\"a\":[1,2.5],\"b\":null},\"ids\":[1,2],\"isVisible\":true,"
+                          + "\"kind\":\"CLOSED\",\"name\":\"a \\\"b\\\"\",\"points\":[{\"x\":1,\"y\":1.1},null],"
+                          + "\"tag\":\"t\"}";
+            Object decoded = new JSONDecoder(json).parseValue(shape);
+            Assert.assertEquals(json, JSONEncoder.toString(decoded));
+            Assert.assertEquals(json, JSONEncoder.toString(codec.decode(new JSONDecoder(json + " "))));
+
+            // Unlike the reflective binding, the generated code does not hide exceptions of getters
+            try {
+                JSONEncoder.toString(loader.loadClass("example.Failing").newInstance());
+                Assert.fail("Expected the getter to fail");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testRecord() throws Exception {
+        Assume.assumeTrue(SourceVersion.latestSupported().ordinal() >= 16);
+
+        Path output = createOutput();
+        String range = "package example;\n"
+                       + "@nl.jonghuis.parsing.json.JSONSerializable\n"
+                       + "public record Range(int from, int to, String label) {}\n";
+        Assert.assertEquals(Arrays.asList(), compile(output, new Source("example.Range", range)));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+                                                        getClass().getClassLoader())) {
+            JSONDecoder decoder = new JSONDecoder("{\"to\": 5, \"label\": \"x\", \"other\": [1]}");
+            Object decoded = decoder.parseValue(loader.loadClass("example.Range"));
+            Assert.assertEquals("{\"from\":0,\"to\":5,\"label\":\"x\"}", JSONEncoder.toString(decoded));
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        Path output = createOutput();
+        String hidden = "package example;\n@nl.jonghuis.parsing.json.JSONSerializable\nclass Hidden {}\n";
+        String box = "package example;\n@nl.jonghuis.parsing.json.JSONSerializable\npublic class Box<T> {}\n";
+        List<String> errors = compile(output, new Source("example.Hidden", hidden), new Source("example.Box", box));
+        Assert.assertEquals(Arrays.asList("Can not generate a JSON codec, since example.Hidden is not public",
+                                          "Can not generate a JSON codec, since generic classes are not supported"),
+                            errors);
+    }
+}
@@ -0,0 +1,73 @@
+package nl.jonghuis.parsing.json;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * Keeps the buffers of the last writer on each thread, so encoding many small values does not allocate new buffers
+ * each time. The buffers are only softly referenced, so they can be reclaimed when memory runs low.
+ */
+final class BufferRecycler {
+    private static final ThreadLocal<SoftReference<BufferRecycler>> RECYCLERS = new ThreadLocal<>();
+
+    private char[] chars;
+    private byte[] bytes;
+
+    private static BufferRecycler get() {
+        SoftReference<BufferRecycler> reference = RECYCLERS.get();
+        BufferRecycler recycler = reference == null ? null : reference.get();
+        if (recycler == null) {
+            recycler = new BufferRecycler();
+            RECYCLERS.set(new SoftReference<>(recycler));
+        }
+        return recycler;
+    }
+
+    /**
+     * @return A recycled buffer of at least the size, or a new one when there is none
+     */
+    static char[] chars(int size) {
+        BufferRecycler recycler = get();
+        char[] chars = recycler.chars;
+        if ((chars != null) && (chars.length >= size)) {
+            recycler.chars = null;
+            return chars;
+        }
+        return new char[size];
+    }
+
+    /**
+     * @return A recycled buffer of at least the size, or a new one when there is none
+     */
+    static byte[] bytes(int size) {
+        BufferRecycler recycler = get();
+        byte[] bytes = recycler.bytes;
+        if ((bytes != null) && (bytes.length >= size)) {
+            recycler.bytes = null;
+            return bytes;
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Returns the buffer, which must not be used anymore by the caller.
+     */
+    static void release(char[] chars) {
+        BufferRecycler recycler = get();
+        if ((recycler.chars == null) || (recycler.chars.length < chars.length)) {
+            recycler.chars = chars;
+        }
+    }
+
+    /**
+     * Returns the buffer, which must not be used anymore by the caller.
+     */
+    static void release(byte[] bytes) {
+        BufferRecycler recycler = get();
+        if ((recycler.bytes == null) || (recycler.bytes.length < bytes.length)) {
+            recycler.bytes = bytes;
+        }
+    }
+
+    private BufferRecycler() {
+    }
+}
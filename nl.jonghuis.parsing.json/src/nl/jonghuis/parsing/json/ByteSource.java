@@ -0,0 +1,167 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * UTF-8 encoded input that can be read from any position by multiple threads at the same time, either from a file or
+ * from a buffer in memory. A file is mapped into memory once, and all the readers share that mapping. A single mapping
+ * can not be larger than 2GB, so bigger files are mapped as a sequence of regions.
+ */
+final class ByteSource implements Closeable {
+    private static final int REGION_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final ByteBuffer[] regions;
+    private final long size;
+
+    ByteSource(FileChannel channel) throws IOException {
+        this(channel, REGION_SIZE);
+    }
+
+    ByteSource(FileChannel channel, int regionSize) throws IOException {
+        this.channel = channel;
+        this.regionSize = regionSize;
+        size = channel.size();
+        regions = new ByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+        for (int ix = 0; ix < regions.length; ix++) {
+            long start = (long) ix * regionSize;
+            regions[ix] = channel.map(MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+        }
+    }
+
+    /**
+     * Uses the remaining bytes of the buffer, without changing its position.
+     */
+    ByteSource(ByteBuffer buffer) {
+        channel = null;
+        regionSize = Integer.MAX_VALUE;
+        regions = new ByteBuffer[] { buffer.slice() };
+        size = buffer.remaining();
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return The bytes from the start up to the end, as far as they are in the same region as the start
+     */
+    ByteBuffer part(long start, long end) {
+        ByteBuffer region = regions[(int) (start / regionSize)];
+        long regionStart = (start / regionSize) * regionSize;
+        ByteBuffer part = region.duplicate();
+        part.limit((int) (Math.min(end, regionStart + region.capacity()) - regionStart));
+        part.position((int) (start - regionStart));
+        return part;
+    }
+
+    byte get(long index) {
+        return regions[(int) (index / regionSize)].get((int) (index % regionSize));
+    }
+
+    /**
+     * Reads the bytes from the position into the block, as far as they fit.
+     *
+     * @return The number of bytes read, which is only 0 at the end of the input
+     */
+    int read(long position, byte[] block) {
+        int length = 0;
+        while ((length < block.length) && (position + length < size)) {
+            ByteBuffer part = part(position + length, position + block.length);
+            int read = part.remaining();
+            part.get(block, length, read);
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * @return The index of the first occurrence of the byte from the start, or -1 when it does not occur before the end
+     */
+    long indexOf(byte value, long start, long end) {
+        byte[] block = new byte[8192];
+        for (long position = start; position < end; position += block.length) {
+            int length = (int) Math.min(read(position, block), end - position);
+            for (int ix = 0; ix < length; ix++) {
+                if (block[ix] == value) {
+                    return position + ix;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return A reader for the characters between the indexes, which must both be at the start of a character
+     */
+    Reader reader(long start, long end) {
+        if (start >= end) {
+            return new UTF8Reader(new byte[0], 0, 0);
+        } else if ((start / regionSize) == ((end - 1) / regionSize)) {
+            return new UTF8Reader(part(start, end));
+        }
+        return new UTF8Reader(this, start, end);
+    }
+
+    /**
+     * Moves an error from a decoder that started at the given index, to where it is in the complete input. The lines
+     * and characters in front of it are only counted here, for the same reason as in the decoder.
+     */
+    JSONParseException relocate(JSONParseException error, long index, long recordNumber) {
+        int lines = 0;
+        int characters = 0;
+        byte[] block = new byte[8192];
+        for (long position = 0; position < index; position += block.length) {
+            int length = (int) Math.min(read(position, block), index - position);
+            for (int ix = 0; ix < length; ix++) {
+                byte value = block[ix];
+                if (value == '\n') {
+                    lines++;
+                    characters = 0;
+                } else if ((value & 0xC0) != 0x80) {
+                    // Only count the first byte of each character, the ones of 4 bytes are a surrogate pair
+                    characters += (value & 0xF8) == 0xF0 ? 2 : 1;
+                }
+            }
+        }
+        return error.inRecord(recordNumber, lines, characters);
+    }
+
+    /**
+     * Counts the values between the indexes, by skipping them. Only used to report errors, so the values are not
+     * counted while they are parsed. An error in front of the end is thrown instead, since it comes first.
+     *
+     * @param commas
+     *            Whether the values are elements of an array, which are separated by commas
+     */
+    long countValues(long start, long end, boolean commas) throws IOException {
+        long count = 0;
+        try {
+            JSONDecoder decoder = new JSONDecoder(reader(start, end));
+            while (!decoder.isEndOfFile()) {
+                decoder.skipValue();
+                count++;
+                if (commas && !decoder.isEndOfFile()) {
+                    decoder.consume(',', "a comma");
+                    decoder.skipWhitespace();
+                }
+            }
+            return count;
+        } catch (JSONParseException e) {
+            throw relocate(e, start, count + 1);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
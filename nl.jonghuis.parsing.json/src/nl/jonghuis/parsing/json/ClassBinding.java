@@ -0,0 +1,587 @@
+package nl.jonghuis.parsing.json;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * How objects of a class are turned into a {@link JSONObject} and back. The getters and constructors are only looked
+ * up once per class, and are called through generated functions instead of reflection.
+ *
+ * The properties of a class are its public getters (<code>getName()</code>, or <code>isName()</code> for booleans),
+ * or the components of a record. An object is created from a {@link JSONObject} with a public constructor that
+ * accepts one, or else with the canonical constructor of a record.
+ *
+ * For decoding straight into objects (see {@link JSONDecoder#parseValue(Type)}), a class can also be created with its
+ * public constructor without arguments, after which its public setters (<code>setName(value)</code>) are called.
+ */
+final class ClassBinding {
+    private static final ClassValue<ClassBinding> BINDINGS = new ClassValue<ClassBinding>() {
+        @Override
+        protected ClassBinding computeValue(Class<?> type) {
+            return new ClassBinding(type);
+        }
+    };
+
+    static ClassBinding of(Class<?> type) {
+        return BINDINGS.get(type);
+    }
+
+    static final class Property {
+        final String name;
+        final Class<?> type;
+        final Function<Object, Object> getter;
+
+        Property(String name, Class<?> type, Function<Object, Object> getter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+        }
+    }
+
+    /**
+     * A property that can be decoded directly, either the component of a record at an index, or a setter.
+     */
+    static final class Target {
+        final int index;
+        final Class<?> type;
+        final Type genericType;
+        final BiConsumer<Object, Object> setter;
+
+        Target(int index, Class<?> type, Type genericType, BiConsumer<Object, Object> setter) {
+            this.index = index;
+            this.type = type;
+            this.genericType = genericType;
+            this.setter = setter;
+        }
+    }
+
+    final Class<?> type;
+    final Property[] properties;
+
+    // Either a function that takes the JSONObject, or the canonical constructor of a record with its components
+    private final Function<Object, Object> creator;
+    private final MethodHandle recordConstructor;
+
+    // For decoding directly, the components of a record or the setters, and the constructor without arguments
+    private final Target[] components;
+    private final Map<String, Target> targets = new HashMap<>();
+    private final Supplier<Object> constructor;
+
+    /**
+     * A cache that holds the names of the targets, such that decoding keys mostly does not create new Strings.
+     */
+    final JSONKeyCache names;
+
+    private ClassBinding(Class<?> type) {
+        this.type = type;
+
+        Object[] components = Records.components(type);
+        List<Property> properties = new ArrayList<>();
+        MethodHandle recordConstructor = null;
+        if (components != null) {
+            Class<?>[] types = new Class<?>[components.length];
+            for (int ix = 0; ix < components.length; ix++) {
+                Method accessor = Records.accessor(components[ix]);
+                types[ix] = accessor.getReturnType();
+                String name = Records.name(components[ix]);
+                Function<Object, Object> getter = getter(accessor);
+                if (getter != null) {
+                    properties.add(new Property(name, types[ix], getter));
+                }
+                targets.put(name, new Target(ix, types[ix], accessor.getGenericReturnType(), null));
+            }
+            try {
+                recordConstructor = MethodHandles.publicLookup()
+                                                 .unreflectConstructor(type.getConstructor(types))
+                                                 .asSpreader(Object[].class, types.length)
+                                                 .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                // Not a public record
+            }
+        } else {
+            for (Method method : type.getMethods()) {
+                String name = propertyName(method);
+                if (name != null) {
+                    Function<Object, Object> getter = getter(method);
+                    if (getter != null) {
+                        properties.add(new Property(name, method.getReturnType(), getter));
+                    }
+                }
+            }
+            // The order of the methods is not defined, so sort them to always write the same JSON
+            properties.sort(Comparator.comparing(property -> property.name));
+
+            for (Method method : type.getMethods()) {
+                String name = setterName(method);
+                if (name != null) {
+                    BiConsumer<Object, Object> setter = setter(method);
+                    Class<?> parameter = method.getParameterTypes()[0];
+                    // With overloaded setters, prefer the one that takes what the getter returns
+                    if ((setter != null)
+                        && (!targets.containsKey(name) || (parameter == getterType(properties, name)))) {
+                        targets.put(name, new Target(-1, parameter, method.getGenericParameterTypes()[0], setter));
+                    }
+                }
+            }
+
+            // A boolean is written with the name of its "is" getter, so it can also be read with that name
+            for (Property property : properties) {
+                if ((property.type == Boolean.TYPE) && property.name.startsWith("is")) {
+                    Target target = targets.get(Character.toLowerCase(property.name.charAt(2))
+                                                + property.name.substring(3));
+                    if ((target != null) && !targets.containsKey(property.name)) {
+                        targets.put(property.name, target);
+                    }
+                }
+            }
+        }
+        this.properties = properties.toArray(new Property[properties.size()]);
+        this.recordConstructor = recordConstructor;
+        this.components = components != null ? new Target[components.length] : null;
+        if (components != null) {
+            for (Target target : targets.values()) {
+                this.components[target.index] = target;
+            }
+        }
+
+        names = new JSONKeyCache(Math.max(targets.size() * 4, 16));
+        for (String name : targets.keySet()) {
+            names.intern(name);
+        }
+
+        Supplier<Object> constructor = null;
+        try {
+            if ((components == null) && Modifier.isPublic(type.getModifiers())
+                && !Modifier.isAbstract(type.getModifiers())) {
+                constructor = supplier(type.getConstructor());
+            }
+        } catch (NoSuchMethodException e) {
+            // Can only be decoded in another way
+        }
+        this.constructor = constructor;
+
+        Function<Object, Object> creator = null;
+        try {
+            creator = function(type.getConstructor(JSONObject.class), JSONObject.class);
+        } catch (NoSuchMethodException e) {
+            // Not available, a record can still be created
+        }
+        this.creator = creator;
+    }
+
+    /**
+     * @return The name of the property that the method is the getter of, or null when it is not a getter
+     */
+    private static String propertyName(Method method) {
+        if ((method.getReturnType() == Void.TYPE)
+            || (method.getParameterTypes().length != 0)
+            || Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+
+        String name = method.getName();
+        if (name.equals("getClass")) {
+            return null;
+        } else if ((name.length() >= 4) && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+            return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+        } else if ((name.length() >= 3) && name.startsWith("is") && (method.getReturnType() == Boolean.TYPE)) {
+            // The name of a boolean property includes the "is"
+            return name;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @return The name of the property that the method is the setter of, or null when it is not a setter
+     */
+    private static String setterName(Method method) {
+        String name = method.getName();
+        if ((method.getParameterTypes().length != 1)
+            || Modifier.isStatic(method.getModifiers())
+            || (name.length() < 4)
+            || !name.startsWith("set")
+            || !Character.isUpperCase(name.charAt(3))) {
+            return null;
+        }
+        return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+    }
+
+    private static Class<?> getterType(List<Property> properties, String name) {
+        for (Property property : properties) {
+            if (property.name.equals(name)) {
+                return property.type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return A function that calls the getter, or null when it can not be accessed
+     */
+    private static Function<Object, Object> getter(Method method) {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return null;
+        }
+        return function(method, method.getDeclaringClass());
+    }
+
+    /**
+     * Creates a function for a method or constructor with a single argument (including the object itself for a
+     * method). When the classes involved can be seen from this bundle, it is a generated lambda that the JIT can inline
+     * like any other call, otherwise (for example in an OSGi framework) the call goes through a method handle.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> function(Executable executable, Class<?> argument) {
+        MethodHandle handle = handle(executable);
+        if (handle == null) {
+            return null;
+        }
+
+        Function<Object, Object> generated = (Function<Object, Object>) generate(Function.class,
+                                                                                 "apply",
+                                                                                 handle,
+                                                                                 MethodType.methodType(Object.class,
+                                                                                                       argument));
+        if (generated != null) {
+            return generated;
+        }
+
+        MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return value -> {
+            try {
+                return generic.invokeExact(value);
+            } catch (Throwable e) {
+                throw ClassBinding.<RuntimeException> rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * @return A consumer that calls the setter (ignoring what it returns), or null when it can not be accessed
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Method method) {
+        if (!Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return null;
+        }
+        MethodHandle handle = handle(method);
+        if (handle == null) {
+            return null;
+        }
+
+        // The generated consumer unboxes the value for a primitive parameter
+        MethodType instantiated = MethodType.methodType(Void.TYPE,
+                                                        method.getDeclaringClass(),
+                                                        method.getParameterTypes()[0])
+                                            .wrap()
+                                            .changeReturnType(Void.TYPE);
+        BiConsumer<Object, Object> generated = (BiConsumer<Object, Object>) generate(BiConsumer.class,
+                                                                                     "accept",
+                                                                                     handle,
+                                                                                     instantiated);
+        if (generated != null) {
+            return generated;
+        }
+
+        MethodHandle generic = handle.asType(MethodType.methodType(Void.TYPE, Object.class, Object.class));
+        return (target, value) -> {
+            try {
+                generic.invokeExact(target, value);
+            } catch (Throwable e) {
+                throw ClassBinding.<RuntimeException> rethrow(e);
+            }
+        };
+    }
+
+    /**
+     * @return A supplier that calls the constructor without arguments, or null when it can not be accessed
+     */
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> supplier(Constructor<?> constructor) {
+        MethodHandle handle = handle(constructor);
+        if (handle == null) {
+            return null;
+        }
+
+        Supplier<Object> generated = (Supplier<Object>) generate(Supplier.class, "get", handle, handle.type());
+        if (generated != null) {
+            return generated;
+        }
+
+        MethodHandle generic = handle.asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return generic.invokeExact();
+            } catch (Throwable e) {
+                throw ClassBinding.<RuntimeException> rethrow(e);
+            }
+        };
+    }
+
+    private static MethodHandle handle(Executable executable) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            return executable instanceof Method ? lookup.unreflect((Method) executable)
+                                                : lookup.unreflectConstructor((Constructor<?>) executable);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return A generated implementation of the functional interface that calls the handle, or null when one of the
+     *         classes involved can not be seen from this bundle
+     */
+    private static Object generate(Class<?> functional, String name, MethodHandle handle, MethodType instantiated) {
+        if (!isVisible(handle.type().returnType())) {
+            return null;
+        }
+        for (Class<?> parameter : handle.type().parameterArray()) {
+            if (!isVisible(parameter)) {
+                return null;
+            }
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(),
+                                                          name,
+                                                          MethodType.methodType(functional),
+                                                          instantiated.erase(),
+                                                          handle,
+                                                          instantiated);
+            return site.getTarget().invoke();
+        } catch (Throwable e) {
+            // Fall back to calling the handle
+            return null;
+        }
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        try {
+            return Class.forName(type.getName(), false, ClassBinding.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Throws any exception unchanged, also the checked exceptions that the generated functions can throw.
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends Throwable> E rethrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    /**
+     * Copies the properties of the source into the object, in the same way as the {@link JSONObject} always has:
+     * nested objects and collections are converted as well, and properties whose getter fails are left out.
+     */
+    void read(Object source, JSONObject target) throws UnexpectedTypeException {
+        for (Property property : properties) {
+            Object value;
+            try {
+                value = property.getter.apply(source);
+            } catch (Exception e) {
+                continue;
+            }
+
+            if ((property.type == Boolean.TYPE) || (value instanceof Number) || (value instanceof String)) {
+                target.put(property.name, value);
+            } else if (value instanceof Collection) {
+                target.put(property.name, JSONArray.as(value));
+            } else {
+                target.put(property.name, JSONObject.as(value));
+            }
+        }
+
+        if (target.isEmpty()) {
+            throw new UnexpectedTypeException("a JavaBean object", type.getName());
+        }
+    }
+
+    /**
+     * Creates an object from a complete {@link JSONObject}. For a record, primitive components that are missing are
+     * left at zero, the same as when decoding directly, but a null value for them is an error.
+     */
+    Object create(JSONObject object) throws UnexpectedTypeException {
+        try {
+            if (creator != null) {
+                return creator.apply(object);
+            } else if (recordConstructor != null) {
+                Object[] arguments = new Object[properties.length];
+                for (int ix = 0; ix < arguments.length; ix++) {
+                    Property property = properties[ix];
+                    if (property.type.isPrimitive() && !object.containsKey(property.name)) {
+                        arguments[ix] = zero(property.type);
+                    } else {
+                        arguments[ix] = convert(object.get(property.name), property.type);
+                    }
+                }
+                return recordConstructor.invokeExact(arguments);
+            }
+        } catch (UnexpectedTypeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UnexpectedTypeException("Could not create a " + type + " from this object: " + object, e);
+        }
+        throw new UnexpectedTypeException("Could not find a way to create a " + type + " from this object: " + object);
+    }
+
+    /**
+     * @return Whether objects of this class are created from a complete {@link JSONObject}
+     */
+    boolean hasCreator() {
+        return creator != null;
+    }
+
+    /**
+     * @return The target for the key of an object, or null when it is not decoded
+     */
+    Target target(String name) {
+        return targets.get(name);
+    }
+
+    /**
+     * @return The arguments to fill in for the canonical constructor of a record, or null when this is not a record
+     *         that can be created
+     */
+    Object[] newArguments() {
+        return recordConstructor != null ? new Object[components.length] : null;
+    }
+
+    /**
+     * Creates a record from the arguments, where primitive components that were not filled in are left at zero, the
+     * same as in {@link #create(JSONObject)}.
+     */
+    Object construct(Object[] arguments) throws Throwable {
+        for (int ix = 0; ix < arguments.length; ix++) {
+            if ((arguments[ix] == null) && components[ix].type.isPrimitive()) {
+                arguments[ix] = zero(components[ix].type);
+            }
+        }
+        return recordConstructor.invokeExact(arguments);
+    }
+
+    /**
+     * @return The default value of a primitive type, zero or false
+     */
+    private static Object zero(Class<?> type) {
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+
+    /**
+     * @return A new object to call the setters on, or null when there is no public constructor without arguments
+     */
+    Object newInstance() {
+        return constructor != null ? constructor.get() : null;
+    }
+
+    /**
+     * Converts a value from a {@link JSONObject} into the type of a component of a record.
+     */
+    static Object convert(Object value, Class<?> type) throws UnexpectedTypeException {
+        if (type.isInstance(value)) {
+            return value;
+        } else if (value == null) {
+            if (type.isPrimitive()) {
+                throw new UnexpectedTypeException(type.getName(), value);
+            }
+            return null;
+        } else if ((value instanceof Number) && (Number.class.isAssignableFrom(type) || type.isPrimitive())) {
+            Number number = (Number) value;
+            if ((type == Integer.TYPE) || (type == Integer.class)) {
+                return number.intValue();
+            } else if ((type == Long.TYPE) || (type == Long.class)) {
+                return number.longValue();
+            } else if ((type == Double.TYPE) || (type == Double.class)) {
+                return number.doubleValue();
+            } else if ((type == Float.TYPE) || (type == Float.class)) {
+                return number.floatValue();
+            } else if ((type == Short.TYPE) || (type == Short.class)) {
+                return number.shortValue();
+            } else if ((type == Byte.TYPE) || (type == Byte.class)) {
+                return number.byteValue();
+            }
+        } else if ((value instanceof Boolean) && (type == Boolean.TYPE)) {
+            return value;
+        } else if ((value instanceof JSONObject) && !type.isPrimitive()) {
+            return ((JSONObject) value).as(type);
+        }
+        throw new UnexpectedTypeException(type.getName(), value);
+    }
+
+    /**
+     * Access to records through reflection, since they do not exist in the Java version this is compiled for.
+     */
+    private static final class Records {
+        private static final Method GET_RECORD_COMPONENTS;
+        private static final Method GET_NAME;
+        private static final Method GET_ACCESSOR;
+
+        static {
+            Method getRecordComponents = null, getName = null, getAccessor = null;
+            try {
+                getRecordComponents = Class.class.getMethod("getRecordComponents");
+                Class<?> recordComponent = getRecordComponents.getReturnType().getComponentType();
+                getName = recordComponent.getMethod("getName");
+                getAccessor = recordComponent.getMethod("getAccessor");
+            } catch (NoSuchMethodException e) {
+                // Running on a Java version without records
+            }
+            GET_RECORD_COMPONENTS = getRecordComponents;
+            GET_NAME = getName;
+            GET_ACCESSOR = getAccessor;
+        }
+
+        /**
+         * @return The components of the record, or null when the type is not a record
+         */
+        static Object[] components(Class<?> type) {
+            if (GET_RECORD_COMPONENTS == null) {
+                return null;
+            }
+            return (Object[]) invoke(GET_RECORD_COMPONENTS, type);
+        }
+
+        static String name(Object component) {
+            return (String) invoke(GET_NAME, component);
+        }
+
+        static Method accessor(Object component) {
+            return (Method) invoke(GET_ACCESSOR, component);
+        }
+
+        private static Object invoke(Method method, Object target) {
+            try {
+                return method.invoke(target);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not inspect the record " + target, e);
+            }
+        }
+    }
+}
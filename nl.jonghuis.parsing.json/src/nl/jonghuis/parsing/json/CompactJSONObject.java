@@ -0,0 +1,452 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link JSONObject} that keeps its values in an array, next to a {@link Shape} with the keys (see
+ * {@link JSONDecoder#compactObjects()}). Objects with the same keys in the same order share their shape, so each of
+ * them only costs the array of values. Keys are looked up with a linear scan, which is why only small objects are
+ * stored like this. Changing the value of an existing key keeps the object compact, any other change copies the
+ * entries into the map itself, after which it behaves like any other {@link JSONObject}.
+ */
+final class CompactJSONObject extends JSONObject {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The maximum number of keys in a compact object.
+     */
+    static final int MAX_KEYS = 16;
+
+    /**
+     * The keys of an object, in order. The shape of an object is found by following the transitions from the empty
+     * shape for each of its keys. Like the {@link JSONKeyCache}, shapes can be shared by decoders on different threads
+     * without any locking: the worst that can happen in a race is that a transition is lost, so some objects with the
+     * same keys do not share their shape.
+     */
+    static final class Shape {
+        private static final Shape[] NONE = new Shape[0];
+        private static final int MAX_CHILDREN = 8;
+        private static final int MAX_SHAPES = 4096;
+
+        final String[] keys;
+        // The number of shapes that have been linked into the tree of this shape
+        private final AtomicInteger shapes;
+        private volatile Shape[] children = NONE;
+
+        private Shape(String[] keys, AtomicInteger shapes) {
+            this.keys = keys;
+            this.shapes = shapes;
+        }
+
+        /**
+         * @return A new empty shape, that is the root of its own tree
+         */
+        static Shape root() {
+            return new Shape(new String[0], new AtomicInteger());
+        }
+
+        /**
+         * @return The shape with the key added at the end. When the tree is full, the shape is not shared.
+         */
+        Shape with(String key) {
+            Shape[] children = this.children;
+            for (Shape child : children) {
+                String last = child.keys[keys.length];
+                if ((last == key) || last.equals(key)) {
+                    return child;
+                }
+            }
+
+            String[] keys = Arrays.copyOf(this.keys, this.keys.length + 1);
+            keys[this.keys.length] = key;
+            Shape child = new Shape(keys, shapes);
+            if ((children.length < MAX_CHILDREN) && (shapes.incrementAndGet() <= MAX_SHAPES)) {
+                Shape[] updated = Arrays.copyOf(children, children.length + 1);
+                updated[children.length] = child;
+                this.children = updated;
+            }
+            return child;
+        }
+
+        int indexOf(Object key) {
+            for (int ix = 0; ix < keys.length; ix++) {
+                if (keys[ix] == key) {
+                    return ix;
+                }
+            }
+            if (key != null) {
+                for (int ix = 0; ix < keys.length; ix++) {
+                    if (keys[ix].equals(key)) {
+                        return ix;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final transient Shape shape;
+    // The values for the keys of the shape, or null when the entries have been copied into the map
+    private Object[] values;
+
+    CompactJSONObject(Shape shape, Object[] values) {
+        this.shape = shape;
+        this.values = values;
+    }
+
+    /**
+     * @return The keys, or null when the object is not compact anymore
+     */
+    String[] keys() {
+        return values == null ? null : shape.keys;
+    }
+
+    Object value(int index) {
+        return values[index];
+    }
+
+    private void inflate() {
+        if (values != null) {
+            Object[] values = this.values;
+            this.values = null;
+            for (int ix = 0; ix < values.length; ix++) {
+                super.put(shape.keys[ix], values[ix]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return values == null ? super.size() : values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (values == null) {
+            return super.get(key);
+        }
+        int index = shape.indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        if (values == null) {
+            return super.getOrDefault(key, defaultValue);
+        }
+        int index = shape.indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return values == null ? super.containsKey(key) : shape.indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (values == null) {
+            return super.containsValue(value);
+        }
+        for (Object v : values) {
+            if (value == null ? v == null : value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (values != null) {
+            int index = shape.indexOf(key);
+            if (index >= 0) {
+                Object old = values[index];
+                values[index] = value;
+                return old;
+            }
+            inflate();
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> m) {
+        inflate();
+        super.putAll(m);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        inflate();
+        return super.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        inflate();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public void clear() {
+        inflate();
+        super.clear();
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        inflate();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        inflate();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        inflate();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction) {
+        inflate();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key,
+                                   BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key,
+                        Object value,
+                        BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        if (values == null) {
+            super.forEach(action);
+        } else {
+            for (int ix = 0; ix < values.length; ix++) {
+                action.accept(shape.keys[ix], values[ix]);
+            }
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+        if (values == null) {
+            super.replaceAll(function);
+        } else {
+            for (int ix = 0; ix < values.length; ix++) {
+                values[ix] = function.apply(shape.keys[ix], values[ix]);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        if (values == null) {
+            return super.keySet();
+        }
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<Map.Entry<String, Object>> entries = new Entries();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactJSONObject.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+        };
+    }
+
+    @Override
+    public Collection<Object> values() {
+        if (values == null) {
+            return super.values();
+        }
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Map.Entry<String, Object>> entries = new Entries();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactJSONObject.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (values == null) {
+            return super.entrySet();
+        }
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new Entries();
+            }
+
+            @Override
+            public int size() {
+                return CompactJSONObject.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the keys of the shape, while the object is compact. Any other change than setting a value makes
+     * the iterator fail, except for removing through the iterator itself, after which it continues with the entries of
+     * the map.
+     */
+    private final class Entries implements Iterator<Map.Entry<String, Object>> {
+        private final Object[] values = CompactJSONObject.this.values;
+        private int index;
+        private String last;
+        // The iterator over the map, after an entry has been removed
+        private Iterator<Map.Entry<String, Object>> entries;
+
+        private void checkValues() {
+            if (CompactJSONObject.this.values != values) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return entries == null ? index < values.length : entries.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (entries != null) {
+                return entries.next();
+            }
+            checkValues();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = shape.keys[index];
+            return new Entry(last, values[index++]);
+        }
+
+        @Override
+        public void remove() {
+            if (entries != null) {
+                entries.remove();
+                return;
+            } else if (last == null) {
+                throw new IllegalStateException();
+            }
+            checkValues();
+            CompactJSONObject.this.remove(last);
+            last = null;
+            // Continue after the entries that have already been returned, minus the one that has been removed
+            entries = CompactJSONObject.super.entrySet().iterator();
+            for (int ix = 1; ix < index; ix++) {
+                entries.next();
+            }
+        }
+    }
+
+    private final class Entry extends AbstractMap.SimpleEntry<String, Object> {
+        private static final long serialVersionUID = 1L;
+
+        Entry(String key, Object value) {
+            super(key, value);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+
+    @Override
+    public Object clone() {
+        inflate();
+        return super.clone();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new JSONObject(this);
+    }
+}
@@ -0,0 +1,112 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Parses the elements of a large array, which has been divided into chunks of elements by {@link ParallelDecoder}.
+ * Each chunk starts right after a comma (or the opening bracket for the first), and ends right before the next comma
+ * (or the closing bracket for the last).
+ */
+final class ElementSpliterator implements Spliterator<Object> {
+    private final ByteSource source;
+    private final JSONKeyCache keyCache;
+    // The start of each chunk, right after a comma, and one past the closing bracket at the end
+    private final long[] starts;
+    private int chunk;
+    private final int endChunk;
+
+    private JSONDecoder decoder;
+    // The number of elements that have been parsed from the chunk
+    private long element;
+
+    ElementSpliterator(ByteSource source, long[] starts, int chunk, int endChunk, JSONKeyCache keyCache) {
+        this.source = source;
+        this.keyCache = keyCache;
+        this.starts = starts;
+        this.chunk = chunk;
+        this.endChunk = endChunk;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        Object value;
+        try {
+            while (true) {
+                if (decoder == null) {
+                    if (chunk == endChunk) {
+                        return false;
+                    }
+                    decoder = new JSONDecoder(source.reader(starts[chunk], starts[chunk + 1] - 1));
+                    decoder.withKeyCache(keyCache);
+                    element = 0;
+
+                    // Only an array without any chunk boundaries can be empty
+                    if (decoder.isEndOfFile() && (starts.length == 2)) {
+                        decoder = null;
+                        chunk++;
+                        continue;
+                    }
+                } else if (decoder.isEndOfFile()) {
+                    decoder = null;
+                    chunk++;
+                    continue;
+                } else {
+                    try {
+                        decoder.consume(',', "a comma");
+                        decoder.skipWhitespace();
+                    } catch (JSONParseException e) {
+                        // Part of the last element, that is not followed by a comma
+                        throw source.relocate(e, starts[chunk], elementsBefore() + element);
+                    }
+                }
+                break;
+            }
+
+            try {
+                value = decoder.parseValue();
+            } catch (JSONParseException e) {
+                throw source.relocate(e, starts[chunk], elementsBefore() + element + 1);
+            }
+            element++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        action.accept(value);
+        return true;
+    }
+
+    /**
+     * @return The number of elements in front of the chunk, which are only counted to report an error
+     */
+    private long elementsBefore() throws IOException {
+        return source.countValues(starts[0], starts[chunk], true);
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+        if ((decoder != null) || (endChunk - chunk < 2)) {
+            return null;
+        }
+
+        int middle = (chunk + endChunk) >>> 1;
+        ElementSpliterator prefix = new ElementSpliterator(source, starts, chunk, middle, keyCache);
+        chunk = middle;
+        return prefix;
+    }
+
+    /**
+     * @return The number of bytes, since the number of elements in the last chunk is not known
+     */
+    @Override
+    public long estimateSize() {
+        return starts[endChunk] - starts[chunk];
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+}
@@ -0,0 +1,138 @@
+package nl.jonghuis.parsing.json;
+
+import java.math.BigInteger;
+
+/**
+ * Converts a decimal significand and exponent to the nearest double, without creating any objects. Small numbers are
+ * converted exactly using a single multiplication or division (Clinger's fast path), the rest using the Eisel-Lemire
+ * algorithm. When that algorithm can not decide the correct rounding, NaN is returned and the caller should fall
+ * back to {@link Double#parseDouble(String)}.
+ */
+final class FastDoubleParser {
+    private static final double[] SMALL_POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+                                                          1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+                                                          1e20, 1e21, 1e22 };
+
+    private static final int MIN_EXPONENT = -348;
+    private static final int MAX_EXPONENT = 347;
+
+    // The 128-bit mantissas of the powers of ten, rounded down and normalized such that the highest bit is set
+    private static final long[] POWERS_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWERS_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        for (int exponent = MIN_EXPONENT; exponent <= MAX_EXPONENT; exponent++) {
+            BigInteger mantissa;
+            if (exponent >= 0) {
+                BigInteger power = BigInteger.TEN.pow(exponent);
+                int shift = power.bitLength() - 128;
+                mantissa = shift >= 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+            } else {
+                BigInteger divisor = BigInteger.TEN.pow(-exponent);
+                mantissa = BigInteger.ONE.shiftLeft(127 + divisor.bitLength()).divide(divisor);
+            }
+            POWERS_HIGH[exponent - MIN_EXPONENT] = mantissa.shiftRight(64).longValue();
+            POWERS_LOW[exponent - MIN_EXPONENT] = mantissa.longValue();
+        }
+    }
+
+    private FastDoubleParser() {
+    }
+
+    /**
+     * @param significand
+     *            The decimal digits, as an unsigned long
+     * @param exponent
+     *            The power of ten the significand should be multiplied with
+     * @return The nearest double, or NaN when it could not be determined
+     */
+    static double toDouble(long significand, int exponent) {
+        if (significand == 0) {
+            return 0.0;
+        }
+
+        if ((significand > 0) && (significand <= (1L << 53)) && (exponent >= -22) && (exponent <= 22)) {
+            // Both the significand and the power of ten are exact doubles, so is the result of one operation
+            if (exponent >= 0) {
+                return significand * SMALL_POWERS_OF_TEN[exponent];
+            } else {
+                return significand / SMALL_POWERS_OF_TEN[-exponent];
+            }
+        }
+
+        if (exponent < MIN_EXPONENT) {
+            return 0.0;
+        } else if (exponent > MAX_EXPONENT) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return eiselLemire(significand, exponent);
+    }
+
+    private static double eiselLemire(long significand, int exponent) {
+        // Normalization
+        int leadingZeros = Long.numberOfLeadingZeros(significand);
+        significand <<= leadingZeros;
+        long exponent2 = ((217706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+
+        // Multiplication
+        long powerHigh = POWERS_HIGH[exponent - MIN_EXPONENT];
+        long powerLow = POWERS_LOW[exponent - MIN_EXPONENT];
+        long high = multiplyHigh(significand, powerHigh);
+        long low = significand * powerHigh;
+
+        // Wider approximation, when the lower bits of the result are all ones
+        if (((high & 0x1FF) == 0x1FF) && (Long.compareUnsigned(low + significand, significand) < 0)) {
+            long secondHigh = multiplyHigh(significand, powerLow);
+            long secondLow = significand * powerLow;
+            long mergedHigh = high;
+            long mergedLow = low + secondHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if (((mergedHigh & 0x1FF) == 0x1FF)
+                && (mergedLow == -1L)
+                && (Long.compareUnsigned(secondLow + significand, significand) < 0)) {
+                return Double.NaN;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+
+        // Shifting to 54 bits
+        long msb = high >>> 63;
+        long mantissa = high >>> (msb + 9);
+        exponent2 -= 1 ^ msb;
+
+        // Half-way ambiguity
+        if ((low == 0) && ((high & 0x1FF) == 0) && ((mantissa & 3) == 1)) {
+            return Double.NaN;
+        }
+
+        // From 54 to 53 bits
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if ((mantissa >>> 53) > 0) {
+            mantissa >>>= 1;
+            exponent2++;
+        }
+
+        // Subnormal numbers and infinity are left to the fallback
+        if ((exponent2 <= 0) || (exponent2 >= 0x7FF)) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble((exponent2 << 52) | (mantissa & 0x000FFFFFFFFFFFFFL));
+    }
+
+    /**
+     * @return The upper 64 bits of the unsigned 128-bit product
+     */
+    static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+
+        long middle = (x1 * y0) + ((x0 * y0) >>> 32) + ((x0 * y1) & 0xFFFFFFFFL);
+        return (x1 * y1) + (middle >>> 32) + ((x0 * y1) >>> 32);
+    }
+}
@@ -0,0 +1,101 @@
+package nl.jonghuis.parsing.json;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Finds the generated {@link JSONCodec} of a class, once per class.
+ */
+final class GeneratedCodecs {
+    private static final ClassValue<JSONCodec<?>> CODECS = new ClassValue<JSONCodec<?>>() {
+        @Override
+        protected JSONCodec<?> computeValue(Class<?> type) {
+            return find(type);
+        }
+    };
+
+    private GeneratedCodecs() {
+    }
+
+    /**
+     * @return The generated codec of the class, or null when there is none
+     */
+    @SuppressWarnings("unchecked")
+    static JSONCodec<Object> of(Class<?> type) {
+        return (JSONCodec<Object>) CODECS.get(type);
+    }
+
+    private static JSONCodec<?> find(Class<?> type) {
+        if (!type.isAnnotationPresent(JSONSerializable.class)) {
+            return null;
+        }
+
+        String name = type.getName();
+        int packageEnd = name.lastIndexOf('.') + 1;
+        String codecName = name.substring(0, packageEnd) + name.substring(packageEnd).replace('$', '_') + "JSONCodec";
+        try {
+            Class<?> codec = Class.forName(codecName, true, type.getClassLoader());
+            return (JSONCodec<?>) codec.getConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            // Not generated, for example when the annotation processor did not run
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalStateException("Could not create the codec " + codecName, e);
+        }
+    }
+
+    /**
+     * The parameterized types that generated codecs use to decode generic properties.
+     */
+    static final class ParameterizedTypeImpl implements ParameterizedType {
+        private final Class<?> rawType;
+        private final Type[] arguments;
+
+        ParameterizedTypeImpl(Class<?> rawType, Type[] arguments) {
+            this.rawType = rawType;
+            this.arguments = arguments.clone();
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(arguments) ^ rawType.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType other = (ParameterizedType) obj;
+            return rawType.equals(other.getRawType())
+                   && Objects.equals(getOwnerType(), other.getOwnerType())
+                   && Arrays.equals(arguments, other.getActualTypeArguments());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(rawType.getName()).append('<');
+            for (int ix = 0; ix < arguments.length; ix++) {
+                sb.append(ix == 0 ? "" : ", ").append(arguments[ix].getTypeName());
+            }
+            return sb.append('>').toString();
+        }
+    }
+}
@@ -2,12 +2,14 @@ package nl.jonghuis.parsing.json;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 
@@ -16,23 +18,56 @@ public class JSONArray extends ArrayList<Object> {
 
     public static final JSONArray from(String json) throws JSONParseException {
         try {
-            return from(new StringReader(json));
+            return new JSONDecoder(json).parseArray();
         } catch (JSONParseException e) {
             throw e;
         } catch (IOException e) {
-            // Should never be possible using the StringReader
+            // Should never be possible when parsing from a string
             throw new AssertionError(e);
         }
     }
 
     public static final JSONArray from(InputStream input) throws IOException {
-        return from(new InputStreamReader(input));
+        return new JSONDecoder(input).parseArray();
+    }
+
+    public static final JSONArray from(byte[] bytes) throws IOException {
+        return new JSONDecoder(bytes).parseArray();
+    }
+
+    public static final JSONArray from(ByteBuffer bytes) throws IOException {
+        return new JSONDecoder(bytes).parseArray();
+    }
+
+    public static final JSONArray from(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JSONDecoder(channel).parseArray();
+        }
     }
 
     public static final JSONArray from(Reader reader) throws IOException {
         return new JSONDecoder(reader).parseArray();
     }
 
+    /**
+     * Parses the JSON in lazy mode, where the values are only parsed when they are accessed. This is a lot cheaper when
+     * only a few values of a large document are used. See {@link JSONDecoder#lazy()} for the details.
+     */
+    public static final JSONArray lazy(String json) throws JSONParseException {
+        try {
+            return new JSONDecoder(json).lazy().parseArray();
+        } catch (JSONParseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Should never be possible when parsing from a string
+            throw new AssertionError(e);
+        }
+    }
+
+    public static final JSONArray lazy(byte[] bytes) throws IOException {
+        return new JSONDecoder(bytes).lazy().parseArray();
+    }
+
     public static final JSONArray as(Object value) throws UnexpectedTypeException {
         if (value instanceof JSONArray) {
             return (JSONArray) value;
@@ -89,7 +124,7 @@ public class JSONArray extends ArrayList<Object> {
     }
 
     public double getDouble(int ix) throws UnexpectedTypeException {
-        return getNumber(ix).longValue();
+        return getNumber(ix).doubleValue();
     }
 
     public String getString(int ix) throws UnexpectedTypeException {
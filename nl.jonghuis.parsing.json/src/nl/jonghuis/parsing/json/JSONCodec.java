@@ -0,0 +1,30 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes and decodes the objects of one class, without any reflection. Codecs are generated for the classes that are
+ * annotated with {@link JSONSerializable}, in the same package, with the name of the class (the names of nested
+ * classes joined with underscores) followed by <code>JSONCodec</code>. A codec is found by that name through the class
+ * loader of the class itself, which also works when they are part of an OSGi bundle.
+ */
+public interface JSONCodec<T> {
+    Class<T> getType();
+
+    void encode(T value, JSONWriter writer) throws IOException, UnexpectedTypeException;
+
+    /**
+     * Decodes an object that is not null, usually with {@link JSONDecoder#beginObject()} and
+     * {@link JSONDecoder#nextName()}.
+     */
+    T decode(JSONDecoder decoder) throws IOException, UnexpectedTypeException;
+
+    /**
+     * @return A parameterized type, such as <code>List&lt;Point&gt;</code>, to decode a generic property with
+     *         {@link JSONDecoder#parseValue(Type)}
+     */
+    static Type parameterized(Class<?> rawType, Type... arguments) {
+        return new GeneratedCodecs.ParameterizedTypeImpl(rawType, arguments);
+    }
+}
@@ -2,45 +2,243 @@ package nl.jonghuis.parsing.json;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 public class JSONDecoder {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // The characters that need attention when found in a string
+    private static final boolean[] STRING_SPECIALS = new boolean[128];
+
+    static {
+        for (int ch = 0; ch < 32; ch++) {
+            STRING_SPECIALS[ch] = true;
+        }
+        STRING_SPECIALS['"'] = true;
+        STRING_SPECIALS['\\'] = true;
+        STRING_SPECIALS[127] = true;
+    }
+
     public static Object parse(InputStream input) throws IOException {
-        return parse(new InputStreamReader(input));
+        return new JSONDecoder(input).parseValue();
+    }
+
+    public static Object parse(byte[] bytes) throws IOException {
+        return new JSONDecoder(bytes).parseValue();
+    }
+
+    public static Object parse(ByteBuffer bytes) throws IOException {
+        return new JSONDecoder(bytes).parseValue();
     }
 
     public static Object parse(Reader reader) throws IOException {
         return new JSONDecoder(reader).parseValue();
     }
 
+    public static Object parse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JSONDecoder(channel).parseValue();
+        }
+    }
+
     public static Object parse(String string) throws IOException {
-        return parse(new StringReader(string));
+        return new JSONDecoder(string).parseValue();
     }
 
-    private final Reader reader;
-    private int lineNumber, charNumber;
+    // The reader is null when the complete input is available in the buffer
+    private Reader reader;
+    private char[] buffer;
+    private int position, limit;
     private char c;
     private boolean endOfFile;
 
-    private final StringBuilder buffer = new StringBuilder(512);
+    // Start of a region that must be kept in the buffer when it is refilled, or -1
+    private int mark;
+
+    // Line bookkeeping for the characters that have already been dropped from the buffer
+    private int linesDropped;
+    private long lastNewlineIndex;
+    // The number of characters that have been dropped from the buffer
+    private long charsDropped;
+
+    private final StringBuilder builder = new StringBuilder(512);
+    private JSONKeyCache keyCache;
+
+    // In lazy mode, objects and arrays only remember where their values are
+    private boolean lazy;
+    private LazyInput lazyInput;
+
+    // Whether arrays of numbers are stored in primitive arrays
+    private boolean primitiveArrays;
+
+    // Whether small objects are stored compactly, with their shapes shared when there is no key cache
+    private boolean compactObjects;
+    private CompactJSONObject.Shape shapes;
+    // The values of the compact objects that are being parsed, where nested objects continue after their parents
+    private Object[] values;
+    private int valueCount;
+
+    // For each container that is being skipped, whether it is an object
+    private boolean[] skipScopes = new boolean[32];
+
+    // Whether the object that is read with beginObject() and nextName() is still at its first key
+    private boolean firstName;
+
+    // The kinds of numbers that scanNumber() can find, with the fields that hold the result
+    static final int INT_NUMBER = 0;
+    static final int LONG_NUMBER = 1;
+    static final int DOUBLE_NUMBER = 2;
+    static final int BIG_NUMBER = 3;
+
+    long longValue;
+    double doubleValue;
+    Number bigValue;
 
     public JSONDecoder(Reader reader) throws IOException {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    JSONDecoder(Reader reader, int bufferSize) throws IOException {
+        this(reader, new char[bufferSize], 0, 0);
+    }
+
+    /**
+     * Creates a decoder that reads UTF-8 encoded JSON from the stream.
+     */
+    public JSONDecoder(InputStream input) throws IOException {
+        this(new UTF8Reader(input));
+    }
+
+    /**
+     * Creates a decoder that reads UTF-8 encoded JSON from the bytes.
+     */
+    public JSONDecoder(byte[] bytes) throws IOException {
+        this(new UTF8Reader(bytes, 0, bytes.length));
+    }
+
+    /**
+     * Creates a decoder that reads UTF-8 encoded JSON from the remaining bytes in the buffer, without changing the
+     * position of the buffer itself.
+     */
+    public JSONDecoder(ByteBuffer bytes) throws IOException {
+        this(new UTF8Reader(bytes));
+    }
+
+    /**
+     * Creates a decoder that reads UTF-8 encoded JSON from a file, by mapping it into memory. The channel must stay
+     * open while decoding.
+     */
+    public JSONDecoder(FileChannel channel) throws IOException {
+        this(new UTF8Reader(channel));
+    }
+
+    public JSONDecoder(String string) throws IOException {
+        this(null, string.toCharArray(), 0, string.length());
+    }
+
+    /**
+     * Creates a lazy decoder for a value that has been skipped by another lazy decoder.
+     */
+    JSONDecoder(LazyInput input, int offset) throws IOException {
+        this(null, input.chars, offset, input.limit);
+        linesDropped = input.linesDropped;
+        lastNewlineIndex = input.lastNewlineIndex;
+        keyCache = input.keyCache;
+        lazy = true;
+        lazyInput = input;
+    }
+
+    private JSONDecoder(Reader reader, char[] buffer, int position, int limit) throws IOException {
         this.reader = reader;
+        this.buffer = buffer;
+        this.position = position;
+        this.limit = limit;
 
-        lineNumber = 1;
-        charNumber = 0;
         c = 0;
         endOfFile = false;
+        mark = -1;
+        linesDropped = 0;
+        lastNewlineIndex = -1;
 
         // Read the first character and skip all the leading whitespace
         next();
         skipWhitespace();
     }
 
+    /**
+     * Makes the decoder use the cache to get canonical instances of the keys in objects. The same cache can be used
+     * by multiple decoders, even on different threads.
+     *
+     * @return This decoder
+     */
+    public JSONDecoder withKeyCache(JSONKeyCache keyCache) {
+        this.keyCache = keyCache;
+        return this;
+    }
+
+    /**
+     * Makes the decoder return objects and arrays that only parse their values when they are accessed. While
+     * decoding, the values in containers are only checked and their positions are remembered, so getting a few values
+     * from a large document is a lot cheaper than building the whole tree. The rest of the input is read into memory
+     * first, and the containers keep it there until they are garbage collected themselves.
+     *
+     * Duplicate keys are only detected in the objects that have been parsed, so an error in a nested object is
+     * reported as an {@link java.io.UncheckedIOException} when the object is accessed. Lazy containers change
+     * internally when they are read, so unlike normal containers, they can not be read from multiple threads.
+     *
+     * @return This decoder
+     */
+    public JSONDecoder lazy() throws IOException {
+        if (reader != null) {
+            // Keep everything from the current character, until the end of the input
+            mark = position - 1;
+            while (fill()) {
+            }
+            mark = -1;
+            reader = null;
+        }
+        lazy = true;
+        return this;
+    }
+
+    /**
+     * Makes the decoder store arrays that only contain numbers in an int[], long[] or double[], instead of boxing each
+     * of the values. The arrays are still {@link JSONArray}s, that box the values when they are read, except for
+     * {@link JSONArray#getInt(int)}, {@link JSONArray#getLong(int)} and {@link JSONArray#getDouble(int)}. The first
+     * change to such an array boxes all its values. When integers and decimal numbers are mixed in one array, all of
+     * them are stored as doubles, but the integers are still read as integers. This does not combine with
+     * {@link #lazy()}, which takes precedence.
+     *
+     * @return This decoder
+     */
+    public JSONDecoder primitiveArrays() {
+        primitiveArrays = true;
+        return this;
+    }
+
+    /**
+     * Makes the decoder store objects with up to 16 keys compactly: objects with the same keys in the same order share
+     * the keys, so each of them only needs an array with its values. With a key cache (see
+     * {@link #withKeyCache(JSONKeyCache)}), the keys are shared by all decoders that use the cache, otherwise by the
+     * objects from this decoder. The objects keep their order and are still {@link JSONObject}s. Changing the value
+     * of a key keeps them compact, but adding or removing keys copies them into a normal map first. This does not
+     * combine with {@link #lazy()}, which takes precedence.
+     *
+     * @return This decoder
+     */
+    public JSONDecoder compactObjects() {
+        compactObjects = true;
+        return this;
+    }
+
     public Object parseValue() throws IOException {
         checkEndOfFile();
 
@@ -70,126 +268,394 @@ public class JSONDecoder {
         case 'n':
             return parseNull();
         default:
-            throw new JSONParseException("Unexpected character '" + c + "' found", lineNumber, charNumber);
+            throw error("Unexpected character '" + c + "' found");
         }
     }
 
+    /**
+     * Parses the next value and reports its contents to the handler, instead of building a tree. No
+     * {@link JSONObject}s, {@link JSONArray}s or boxed numbers are created this way. Just like the
+     * {@link JSONReader}, duplicate keys are not detected.
+     */
+    public void parseValue(JSONHandler handler) throws IOException {
+        checkEndOfFile();
+
+        switch (c) {
+        case '"':
+            handler.value(parseString());
+            break;
+        case '{':
+            parseObject(handler);
+            break;
+        case '[':
+            parseArray(handler);
+            break;
+        case '-':
+        case '0':
+        case '1':
+        case '2':
+        case '3':
+        case '4':
+        case '5':
+        case '6':
+        case '7':
+        case '8':
+        case '9':
+            switch (scanNumber()) {
+            case INT_NUMBER:
+                handler.value((int) longValue);
+                break;
+            case LONG_NUMBER:
+                handler.value(longValue);
+                break;
+            case DOUBLE_NUMBER:
+                handler.value(doubleValue);
+                break;
+            default:
+                handler.value(bigValue);
+                break;
+            }
+            break;
+        case 't':
+            expectedNext('t', 'r', 'u', 'e');
+            handler.value(true);
+            break;
+        case 'f':
+            expectedNext('f', 'a', 'l', 's', 'e');
+            handler.value(false);
+            break;
+        case 'n':
+            expectedNext('n', 'u', 'l', 'l');
+            handler.nullValue();
+            break;
+        default:
+            throw error("Unexpected character '" + c + "' found");
+        }
+    }
+
+    private void parseArray(JSONHandler handler) throws IOException {
+        consume('[', "start of array");
+        skipWhitespace();
+        handler.startArray();
+
+        boolean first = true;
+        while (c != ']') {
+            if (first) {
+                first = false;
+            } else {
+                consume(',', "a comma");
+                skipWhitespace();
+            }
+            parseValue(handler);
+        }
+
+        next();
+        skipWhitespace();
+        handler.endArray();
+    }
+
+    private void parseObject(JSONHandler handler) throws IOException {
+        consume('{', "start of object");
+        skipWhitespace();
+        handler.startObject();
+
+        boolean first = true;
+        while (c != '}') {
+            if (first) {
+                first = false;
+            } else {
+                consume(',', "a comma");
+                skipWhitespace();
+            }
+
+            handler.name(parseName());
+            consume(':', "colon");
+            skipWhitespace();
+            parseValue(handler);
+        }
+
+        next();
+        skipWhitespace();
+        handler.endObject();
+    }
+
+    /**
+     * Parses the next value straight into an object of the given class, see {@link #parseValue(Type)}.
+     */
+    public <T> T parseValue(Class<T> type) throws IOException {
+        @SuppressWarnings("unchecked")
+        T result = (T) TypeReader.read(this, type);
+        return result;
+    }
+
+    /**
+     * Parses the next value straight into an object of the given type, without building {@link JSONObject}s and
+     * {@link JSONArray}s first. The type can be a primitive (or its wrapper), a String, an enum, an array, a list,
+     * set or map with String keys (given as a {@link java.lang.reflect.ParameterizedType} for the type of the
+     * elements), or any other class. Such a class is created in the first way that works:
+     * <ul>
+     * <li>with a public constructor that accepts a {@link JSONObject},</li>
+     * <li>with the canonical constructor of a public record, where missing components are null or zero,</li>
+     * <li>with a public constructor without arguments, after which the public setters are called.</li>
+     * </ul>
+     * Keys that do not match a component or setter are skipped. Just like the {@link JSONReader}, duplicate keys are
+     * not detected.
+     */
+    public Object parseValue(Type type) throws IOException {
+        return TypeReader.read(this, type);
+    }
+
+    /**
+     * Parses a number into an int, in the same way as {@link Number#intValue()}.
+     */
+    public int parseInt() throws IOException {
+        return TypeReader.intValue(this, TypeReader.scanNumber(this));
+    }
+
+    /**
+     * Parses a number into a long, in the same way as {@link Number#longValue()}, without boxing it.
+     */
+    public long parseLong() throws IOException {
+        return TypeReader.longValue(this, TypeReader.scanNumber(this));
+    }
+
+    /**
+     * Parses a number into a double, in the same way as {@link Number#doubleValue()}, without boxing it.
+     */
+    public double parseDouble() throws IOException {
+        return TypeReader.doubleValue(this, TypeReader.scanNumber(this));
+    }
+
+    public boolean parseBoolean() throws IOException {
+        checkEndOfFile();
+        if (c == 't') {
+            return parseTrue();
+        } else if (c == 'f') {
+            return parseFalse();
+        }
+        throw error("Unexpected character '" + c + "', expected a boolean");
+    }
+
     public Number parseNumber() throws IOException {
-        buffer.setLength(0);
+        return number(scanNumber());
+    }
+
+    /**
+     * @return The number that has been scanned, boxed
+     */
+    private Number number(int kind) {
+        switch (kind) {
+        case INT_NUMBER:
+            return (int) longValue;
+        case LONG_NUMBER:
+            return longValue;
+        case DOUBLE_NUMBER:
+            return doubleValue;
+        default:
+            return bigValue;
+        }
+    }
+
+    /**
+     * Scans a number without boxing it. The result is stored in {@link #longValue} (for both ints and longs),
+     * {@link #doubleValue} or {@link #bigValue}, depending on the kind of number that is returned.
+     *
+     * The digits are collected in a long while scanning, only numbers that need a {@link BigInteger} or
+     * {@link BigDecimal} (or that the {@link FastDoubleParser} can not handle) are parsed from their text.
+     */
+    int scanNumber() throws IOException {
+        // Keep the number in the buffer, in case it has to be parsed from its text
+        mark = position - 1;
+
+        boolean negative = false;
         if (c == '-') {
-            buffer.append('-');
+            negative = true;
             next();
         }
+
+        // Up to 19 significant digits fit in the significand (as an unsigned long)
+        long significand = 0;
+        int significantDigits = 0;
+        int exponentCorrection = 0;
+        boolean truncated = false;
         int integerLength = 0, fractionLength = 0, exponentialLength = 0;
 
         while ((c >= '0') && (c <= '9')) {
-            buffer.append(c);
+            if (significantDigits < 19) {
+                significand = (significand * 10) + (c - '0');
+                if (significand != 0) {
+                    significantDigits++;
+                }
+            } else {
+                exponentCorrection++;
+                truncated |= (c != '0');
+            }
             integerLength++;
             next();
         }
 
         // Parse the fraction part, if found
         if (c == '.') {
-            buffer.append('.');
             next();
             while ((c >= '0') && (c <= '9')) {
-                buffer.append(c);
+                if (significantDigits < 19) {
+                    significand = (significand * 10) + (c - '0');
+                    if (significand != 0) {
+                        significantDigits++;
+                    }
+                    exponentCorrection--;
+                } else {
+                    truncated |= (c != '0');
+                }
                 fractionLength++;
                 next();
             }
 
             if (fractionLength == 0) {
-                throw new JSONParseException("Fraction part started, but no digits found", lineNumber, charNumber);
+                throw error("Fraction part started, but no digits found");
             }
         }
 
+        if ((integerLength == 0) && (fractionLength == 0)) {
+            throw error("Number started, but no digits found");
+        }
+
         // Parse the exponential part, if found
+        int exponent = 0;
         if ((c == 'e') || (c == 'E')) {
-            buffer.append('e');
             next();
+            boolean negativeExponent = false;
             if (c == '-') {
-                buffer.append('-');
+                negativeExponent = true;
                 next();
             } else if (c == '+') {
                 next();
             }
 
             while ((c >= '0') && (c <= '9')) {
-                buffer.append(c);
+                // Any exponent this large results in a BigDecimal anyway
+                if (exponent < 100000) {
+                    exponent = (exponent * 10) + (c - '0');
+                }
                 exponentialLength++;
                 next();
             }
 
             if (exponentialLength == 0) {
-                throw new JSONParseException("Exponential part started, but no digits found", lineNumber, charNumber);
+                throw error("Exponential part started, but no digits found");
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
             }
         }
 
-        skipWhitespace();
-
+        int kind;
         if ((fractionLength == 0) && (exponentialLength == 0)) {
             // Whole number
             if (integerLength <= 9) {
-                return Integer.parseInt(buffer.toString());
+                longValue = negative ? -significand : significand;
+                kind = INT_NUMBER;
             } else if (integerLength <= 18) {
-                return Long.parseLong(buffer.toString());
+                longValue = negative ? -significand : significand;
+                kind = LONG_NUMBER;
             } else {
-                return new BigInteger(buffer.toString());
+                bigValue = new BigInteger(markedText());
+                kind = BIG_NUMBER;
             }
+        } else if (Math.abs(fractionLength - exponent) >= 1024) {
+            // The scale is too large to be useful as a double
+            bigValue = new BigDecimal(markedText());
+            kind = BIG_NUMBER;
         } else {
-            // Decimal numbers, try and parse as double
-            BigDecimal result = new BigDecimal(buffer.toString());
-            if (Math.abs(result.scale()) < 1024) {
-                return result.doubleValue();
+            double value = truncated ? Double.NaN
+                                     : FastDoubleParser.toDouble(significand, exponent + exponentCorrection);
+            if (Double.isNaN(value)) {
+                doubleValue = Double.parseDouble(markedText());
             } else {
-                return result;
+                // A negative zero is only possible for numbers that are too small, like BigDecimal.doubleValue()
+                doubleValue = negative && (significand != 0) ? -value : value;
             }
+            kind = DOUBLE_NUMBER;
         }
+
+        mark = -1;
+        skipWhitespace();
+        return kind;
+    }
+
+    private String markedText() {
+        return new String(buffer, mark, position - 1 - mark);
     }
 
     public String parseString() throws IOException {
         consume('"', "start of string");
         checkEndOfFile();
 
-        buffer.setLength(0);
+        // Fast path, for a string without any escapes that is completely in the buffer
+        int start = position - 1;
+        int end = scanPlainCharacters(start);
+        if ((end < limit) && (buffer[end] == '"')) {
+            String result = new String(buffer, start, end - start);
+            position = end + 1;
+            next();
+            skipWhitespace();
+            return result;
+        }
+
+        return parseEscapedString();
+    }
+
+    /**
+     * Parses the rest of a string, starting at the current character, taking care of escapes and refilling the
+     * buffer.
+     */
+    private String parseEscapedString() throws IOException {
+        builder.setLength(0);
         while (true) {
+            // Copy the characters that need no attention in one go
+            int start = position - 1;
+            int end = scanPlainCharacters(start);
+            if (end > start) {
+                builder.append(buffer, start, end - start);
+                position = end;
+                next();
+                checkEndOfFile();
+                continue;
+            }
+
             if ((c < 32) || (c == 127)) {
-                throw new JSONParseException("Control character in string found", lineNumber, charNumber);
+                throw error("Control character in string found");
             }
 
-            switch (c) {
-            case '"':
+            if (c == '"') {
                 next();
                 skipWhitespace();
-                return buffer.toString();
-            case '\\':
-                next();
-                switch (c) {
-                case 'b':
-                    buffer.append('\b');
-                    break;
-                case 'f':
-                    buffer.append('\f');
-                    break;
-                case 'n':
-                    buffer.append('\n');
-                    break;
-                case 'r':
-                    buffer.append('\r');
-                    break;
-                case 't':
-                    buffer.append('\t');
-                    break;
-                case 'u':
-                    buffer.append(parseUnicodePoint());
-                    break;
-                default:
-                    buffer.append(c);
-                    break;
-                }
+                return builder.toString();
+            }
+
+            // Only an escape is left
+            next();
+            switch (c) {
+            case 'b':
+                builder.append('\b');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'u':
+                builder.append(parseUnicodePoint());
                 break;
             default:
-                buffer.append(c);
+                builder.append(c);
                 break;
             }
 
@@ -198,6 +664,87 @@ public class JSONDecoder {
         }
     }
 
+    /**
+     * Parses the key of an object. When a {@link JSONKeyCache} is used, the key is looked up directly from the
+     * buffer, using a hash that is calculated while scanning.
+     */
+    String parseName() throws IOException {
+        return parseName(keyCache);
+    }
+
+    /**
+     * Parses the key of an object, using the given cache instead of the one of the decoder, when it is not null.
+     */
+    String parseName(JSONKeyCache keyCache) throws IOException {
+        if (keyCache == null) {
+            return parseString();
+        }
+
+        consume('"', "start of string");
+        checkEndOfFile();
+
+        int start = position - 1;
+        int index = start;
+        int hash = 0;
+        while (index < limit) {
+            char ch = buffer[index];
+            if ((ch < 128) && STRING_SPECIALS[ch]) {
+                break;
+            }
+            hash = (31 * hash) + ch;
+            index++;
+        }
+
+        if ((index < limit) && (buffer[index] == '"')) {
+            String result = keyCache.get(buffer, start, index - start, hash);
+            position = index + 1;
+            next();
+            skipWhitespace();
+            return result;
+        }
+        return keyCache.intern(parseEscapedString());
+    }
+
+    /**
+     * Parses the key of an object and compares it with the given name. When the key is completely in the buffer and
+     * has no escapes, it is compared in place, without creating a String.
+     */
+    boolean matchName(String name) throws IOException {
+        consume('"', "start of string");
+        checkEndOfFile();
+
+        int start = position - 1;
+        int end = scanPlainCharacters(start);
+        if ((end < limit) && (buffer[end] == '"')) {
+            boolean matches = (end - start) == name.length();
+            for (int ix = 0; matches && (ix < name.length()); ix++) {
+                matches = buffer[start + ix] == name.charAt(ix);
+            }
+            position = end + 1;
+            next();
+            skipWhitespace();
+            return matches;
+        }
+        return name.equals(parseEscapedString());
+    }
+
+    /**
+     * @return The index of the first character from the given index that ends a string, starts an escape or is a
+     *         control character, or the limit when there is none in the buffer
+     */
+    private int scanPlainCharacters(int index) {
+        char[] buffer = this.buffer;
+        int limit = this.limit;
+        while (index < limit) {
+            char ch = buffer[index];
+            if ((ch < 128) && STRING_SPECIALS[ch]) {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
     private char parseUnicodePoint() throws IOException {
         int unicode = 0;
 
@@ -262,11 +809,7 @@ public class JSONDecoder {
                 unicode += 15;
                 break;
             default:
-                throw new JSONParseException("Invalid character for unicode character \'"
-                                             + c
-                                             + "\'",
-                                             lineNumber,
-                                             charNumber);
+                throw error("Invalid character for unicode character \'" + c + "\'");
             }
         }
 
@@ -276,9 +819,20 @@ public class JSONDecoder {
     public JSONArray parseArray() throws IOException {
         consume('[', "start of array");
         skipWhitespace();
+        return lazy ? parseLazyArrayContents() : parseArrayContents();
+    }
 
-        JSONArray array = new JSONArray();
-        boolean first = true;
+    /**
+     * Parses the rest of an array, after the opening bracket has been consumed.
+     */
+    JSONArray parseArrayContents() throws IOException {
+        if (primitiveArrays && ((c == '-') || ((c >= '0') && (c <= '9')))) {
+            return parsePrimitiveArrayContents();
+        }
+        return parseArrayContents(new JSONArray(), true);
+    }
+
+    private JSONArray parseArrayContents(JSONArray array, boolean first) throws IOException {
         while (true) {
             skipWhitespace();
             if (c == ']') {
@@ -298,12 +852,110 @@ public class JSONDecoder {
         }
     }
 
+    /**
+     * Parses the rest of an array that starts with a number into a primitive array. When a value is found that does
+     * not fit, the values so far are boxed into a normal array and the rest is parsed as usual.
+     */
+    private JSONArray parsePrimitiveArrayContents() throws IOException {
+        PrimitiveJSONArray.Builder builder = new PrimitiveJSONArray.Builder();
+        boolean first = true;
+        while (true) {
+            skipWhitespace();
+            if (c == ']') {
+                next();
+                skipWhitespace();
+                return builder.build();
+            }
+
+            if (first) {
+                first = false;
+            } else {
+                consume(',', "a comma");
+                skipWhitespace();
+            }
+
+            if (isEndOfFile() || ((c != '-') && ((c < '0') || (c > '9')))) {
+                JSONArray array = builder.toJSONArray();
+                array.add(parseValue());
+                return parseArrayContents(array, false);
+            }
+            int kind = scanNumber();
+            if (!builder.add(kind, longValue, doubleValue)) {
+                JSONArray array = builder.toJSONArray();
+                array.add(number(kind));
+                return parseArrayContents(array, false);
+            }
+        }
+    }
+
+    /**
+     * Parses an object. A key that appears more than once is an error, also when its first value is null.
+     */
     public JSONObject parseObject() throws IOException {
         consume('{', "start of object");
         skipWhitespace();
+        return lazy ? parseLazyObjectContents() : parseObjectContents();
+    }
 
-        JSONObject object = new JSONObject();
-        boolean first = true;
+    /**
+     * Starts reading an object key by key, which is how the generated {@link JSONCodec}s decode objects:
+     *
+     * <pre>
+     * decoder.beginObject();
+     * for (String name = decoder.nextName(); name != null; name = decoder.nextName()) {
+     *     switch (name) {
+     *     case "id":
+     *         id = decoder.parseLong();
+     *         break;
+     *     default:
+     *         decoder.skipValue();
+     *     }
+     * }
+     * </pre>
+     *
+     * Just like the {@link JSONReader}, duplicate keys are not detected.
+     */
+    public void beginObject() throws IOException {
+        consume('{', "start of object");
+        skipWhitespace();
+        firstName = true;
+    }
+
+    /**
+     * Moves to the next key of an object that was started with {@link #beginObject()}, after which its value must be
+     * parsed or skipped.
+     *
+     * @return The key, or null when the end of the object has been reached
+     */
+    public String nextName() throws IOException {
+        boolean first = firstName;
+        firstName = false;
+        if (c == '}') {
+            next();
+            skipWhitespace();
+            return null;
+        } else if (!first) {
+            consume(',', "a comma");
+            skipWhitespace();
+        }
+
+        String name = parseName();
+        consume(':', "colon");
+        skipWhitespace();
+        return name;
+    }
+
+    /**
+     * Parses the rest of an object, after the opening brace has been consumed.
+     */
+    JSONObject parseObjectContents() throws IOException {
+        if (compactObjects) {
+            return parseCompactObjectContents();
+        }
+        return parseObjectContents(new JSONObject(), true);
+    }
+
+    private JSONObject parseObjectContents(JSONObject object, boolean first) throws IOException {
         while (true) {
             if (c == '}') {
                 next();
@@ -317,21 +969,367 @@ public class JSONDecoder {
                     skipWhitespace();
                 }
 
-                int startLine = lineNumber;
-                int startChar = charNumber;
+                // Keep the start of the key in the buffer, for reporting duplicates
+                mark = position - 1;
+                String name = parseName();
+                if (object.containsKey(name)) {
+                    throw error("Duplicate key \"" + name + "\" in object", mark);
+                }
+                mark = -1;
+
+                consume(':', "colon");
+                skipWhitespace();
+                object.put(name, parseValue());
+            }
+        }
+    }
+
+    /**
+     * Parses the rest of an object into a {@link CompactJSONObject}. When it has too many keys, the entries so far
+     * are copied into a normal object and the rest is parsed as usual.
+     */
+    private JSONObject parseCompactObjectContents() throws IOException {
+        CompactJSONObject.Shape shape;
+        if (keyCache != null) {
+            shape = keyCache.shapes;
+        } else {
+            if (shapes == null) {
+                shapes = CompactJSONObject.Shape.root();
+            }
+            shape = shapes;
+        }
+        if (values == null) {
+            values = new Object[64];
+        }
+
+        int start = valueCount;
+        try {
+            while (true) {
+                int count = valueCount - start;
+                if (c == '}') {
+                    next();
+                    skipWhitespace();
+                    return new CompactJSONObject(shape, Arrays.copyOfRange(values, start, valueCount));
+                } else if (count == CompactJSONObject.MAX_KEYS) {
+                    JSONObject object = new JSONObject();
+                    for (int ix = 0; ix < count; ix++) {
+                        object.put(shape.keys[ix], values[start + ix]);
+                    }
+                    return parseObjectContents(object, false);
+                }
+
+                if (count > 0) {
+                    consume(',', "a comma");
+                    skipWhitespace();
+                }
+
+                // Keep the start of the key in the buffer, for reporting duplicates
+                mark = position - 1;
+                String name = parseName();
+                if (shape.indexOf(name) >= 0) {
+                    throw error("Duplicate key \"" + name + "\" in object", mark);
+                }
+                mark = -1;
 
-                String name = parseString();
                 consume(':', "colon");
                 skipWhitespace();
                 Object value = parseValue();
+                shape = shape.with(name);
+                if (valueCount == values.length) {
+                    values = Arrays.copyOf(values, valueCount * 2);
+                }
+                values[valueCount++] = value;
+            }
+        } finally {
+            Arrays.fill(values, start, valueCount, null);
+            valueCount = start;
+        }
+    }
+
+    private JSONArray parseLazyArrayContents() throws IOException {
+        LazyJSONArray array = new LazyJSONArray(lazyInput());
+        boolean first = true;
+        while (c != ']') {
+            if (first) {
+                first = false;
+            } else {
+                consume(',', "a comma");
+                skipWhitespace();
+            }
+
+            array.defer(position - 1);
+            skipValue();
+        }
 
-                if (object.put(name, value) != null) {
-                    throw new JSONParseException("Duplicate key \"" + name + "\" in object", startLine, startChar);
+        next();
+        skipWhitespace();
+        return array;
+    }
+
+    private JSONObject parseLazyObjectContents() throws IOException {
+        LazyJSONObject object = new LazyJSONObject(lazyInput());
+        boolean first = true;
+        while (c != '}') {
+            if (first) {
+                first = false;
+            } else {
+                consume(',', "a comma");
+                skipWhitespace();
+            }
+
+            mark = position - 1;
+            String name = parseName();
+            if (object.containsKey(name)) {
+                throw error("Duplicate key \"" + name + "\" in object", mark);
+            }
+            mark = -1;
+
+            consume(':', "colon");
+            skipWhitespace();
+            object.defer(name, position - 1);
+            skipValue();
+        }
+
+        next();
+        skipWhitespace();
+        return object;
+    }
+
+    private LazyInput lazyInput() {
+        if (lazyInput == null) {
+            lazyInput = new LazyInput(buffer, limit, linesDropped, lastNewlineIndex, keyCache);
+        }
+        return lazyInput;
+    }
+
+    /**
+     * Skips the next value without creating it. Strings are only scanned for their closing quote, numbers are checked
+     * for their format without calculating them, and nested containers are tracked with a flag per level instead of
+     * recursion, so any depth can be skipped. The syntax is still checked, so an invalid document is reported in the
+     * same way as when it is parsed, except for duplicate keys.
+     *
+     * This can be mixed with parsing, for example to skip the first values of a stream of values.
+     */
+    public void skipValue() throws IOException {
+        skipValues(0);
+    }
+
+    /**
+     * Skips the rest of the object or array whose opening character has just been consumed.
+     */
+    void skipContainerContents(boolean object) throws IOException {
+        skipWhitespace();
+        if (c == (object ? '}' : ']')) {
+            next();
+            skipWhitespace();
+            return;
+        }
+
+        int depth = pushSkipScope(0, object);
+        if (object) {
+            skipName();
+        }
+        skipValues(depth);
+    }
+
+    /**
+     * Skips values until the given number of containers have been closed, or a single value when there are none.
+     */
+    private void skipValues(int depth) throws IOException {
+        while (true) {
+            checkEndOfFile();
+            switch (c) {
+            case '{':
+                next();
+                skipWhitespace();
+                if (c == '}') {
+                    next();
+                    skipWhitespace();
+                    break;
                 }
+                depth = pushSkipScope(depth, true);
+                skipName();
+                continue;
+            case '[':
+                next();
+                skipWhitespace();
+                if (c == ']') {
+                    next();
+                    skipWhitespace();
+                    break;
+                }
+                depth = pushSkipScope(depth, false);
+                continue;
+            case '"':
+                skipString();
+                break;
+            case 't':
+                expectedNext('t', 'r', 'u', 'e');
+                break;
+            case 'f':
+                expectedNext('f', 'a', 'l', 's', 'e');
+                break;
+            case 'n':
+                expectedNext('n', 'u', 'l', 'l');
+                break;
+            default:
+                if ((c != '-') && ((c < '0') || (c > '9'))) {
+                    throw error("Unexpected character '" + c + "' found");
+                }
+                skipNumber();
+                break;
+            }
+
+            // A complete value has been skipped, close all the containers that end after it
+            while (depth > 0) {
+                boolean object = skipScopes[depth - 1];
+                if (c == (object ? '}' : ']')) {
+                    next();
+                    skipWhitespace();
+                    depth--;
+                } else {
+                    consume(',', "a comma");
+                    skipWhitespace();
+                    if (object) {
+                        skipName();
+                    }
+                    break;
+                }
+            }
+            if (depth == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips a number, checking it in the same way as {@link #scanNumber()} does.
+     */
+    private void skipNumber() throws IOException {
+        if (c == '-') {
+            next();
+        }
+
+        int digits = skipDigits();
+        if (c == '.') {
+            next();
+            if (skipDigits() == 0) {
+                throw error("Fraction part started, but no digits found");
+            }
+            digits++;
+        }
+        if (digits == 0) {
+            throw error("Number started, but no digits found");
+        }
+
+        if ((c == 'e') || (c == 'E')) {
+            next();
+            if ((c == '-') || (c == '+')) {
+                next();
+            }
+            if (skipDigits() == 0) {
+                throw error("Exponential part started, but no digits found");
+            }
+        }
+        skipWhitespace();
+    }
+
+    private int skipDigits() throws IOException {
+        int count = 0;
+        while ((c >= '0') && (c <= '9')) {
+            count++;
+            next();
+        }
+        return count;
+    }
+
+    private int pushSkipScope(int depth, boolean object) {
+        if (depth == skipScopes.length) {
+            skipScopes = Arrays.copyOf(skipScopes, depth * 2);
+        }
+        skipScopes[depth] = object;
+        return depth + 1;
+    }
+
+    void skipName() throws IOException {
+        skipString();
+        consume(':', "colon");
+        skipWhitespace();
+    }
+
+    void skipString() throws IOException {
+        consume('"', "start of string");
+        while (true) {
+            checkEndOfFile();
+            int start = position - 1;
+            int end = scanPlainCharacters(start);
+            if (end > start) {
+                position = end;
+                next();
+                continue;
+            }
+
+            if ((c < 32) || (c == 127)) {
+                throw error("Control character in string found");
             }
+
+            if (c == '"') {
+                next();
+                skipWhitespace();
+                return;
+            }
+
+            // Only an escape is left
+            next();
+            if (c == 'u') {
+                parseUnicodePoint();
+            }
+            next();
         }
     }
 
+    /**
+     * @return The index of the current character in the whole input
+     */
+    long offset() {
+        return (charsDropped + position) - 1;
+    }
+
+    /**
+     * Skips everything up to the start of the next line, to continue with the next record after an error. A newline
+     * can never be part of a valid value, except as whitespace. When the error is found at the start of a later line
+     * than the record started on, the record was cut off and the current character starts the next record, so
+     * nothing is skipped.
+     *
+     * @param recordStart
+     *            The {@link #offset()} of the first character of the record
+     */
+    void skipLine(long recordStart) throws IOException {
+        mark = -1;
+        if (!endOfFile && (offset() > recordStart) && isStartOfLine()) {
+            return;
+        }
+        while (!endOfFile && (c != '\n')) {
+            next();
+        }
+        skipWhitespace();
+    }
+
+    /**
+     * @return Whether there is only whitespace before the current character on its line
+     */
+    private boolean isStartOfLine() {
+        for (int ix = position - 2; ix >= 0; ix--) {
+            if (buffer[ix] == '\n') {
+                return true;
+            } else if (!Character.isWhitespace(buffer[ix])) {
+                return false;
+            }
+        }
+        // The start of the line has been dropped, unless it ends right before the buffer
+        return lastNewlineIndex == -1;
+    }
+
     public Boolean parseTrue() throws IOException {
         expectedNext('t', 'r', 'u', 'e');
         return true;
@@ -347,9 +1345,20 @@ public class JSONDecoder {
         return null;
     }
 
-    private void checkEndOfFile() throws JSONParseException {
+    /**
+     * @return The character that the decoder is currently looking at, which is 0 at the end of the input
+     */
+    char current() {
+        return c;
+    }
+
+    boolean isEndOfFile() {
+        return endOfFile;
+    }
+
+    void checkEndOfFile() throws JSONParseException {
         if (endOfFile) {
-            throw new JSONParseException("Premature end of file found", lineNumber, charNumber);
+            throw error("Premature end of file found");
         }
     }
 
@@ -358,52 +1367,93 @@ public class JSONDecoder {
             checkEndOfFile();
 
             if (c != expectedChar) {
-                throw new JSONParseException("Unexpected character '"
-                                             + c
-                                             + "', expected a '"
-                                             + expectedChar
-                                             + "'",
-                                             lineNumber,
-                                             charNumber);
+                throw error("Unexpected character '" + c + "', expected a '" + expectedChar + "'");
             }
             next();
         }
         skipWhitespace();
     }
 
-    private void consume(char expectedChar, String description) throws IOException {
+    void consume(char expectedChar, String description) throws IOException {
         checkEndOfFile();
         if (c != expectedChar) {
-            throw new JSONParseException("Unexpected character '"
-                                         + c
-                                         + "', expected a "
-                                         + description,
-                                         lineNumber,
-                                         charNumber);
+            throw error("Unexpected character '" + c + "', expected a " + description);
         }
         next();
     }
 
     private void next() throws IOException {
-        int value = reader.read();
-        charNumber++;
-
-        if (value < 0) {
+        if ((position < limit) || fill()) {
+            c = buffer[position++];
+        } else {
+            // Move past the end, such that errors are reported after the last character
             endOfFile = true;
             c = 0;
-            return;
+            position++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if ((reader == null) || endOfFile) {
+            return false;
+        }
+
+        // Drop everything that has been consumed, except for the marked region
+        int keep = mark >= 0 ? mark : position;
+        for (int ix = 0; ix < keep; ix++) {
+            if (buffer[ix] == '\n') {
+                linesDropped++;
+                lastNewlineIndex = ix;
+            }
         }
+        lastNewlineIndex -= keep;
+        charsDropped += keep;
+        limit -= keep;
+        position -= keep;
+        if (mark >= 0) {
+            mark = 0;
+        }
+        System.arraycopy(buffer, keep, buffer, 0, limit);
 
-        c = (char) value;
-        if (c == '\n') {
-            lineNumber++;
-            charNumber = 0;
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
         }
+
+        int read;
+        do {
+            read = reader.read(buffer, limit, buffer.length - limit);
+        } while (read == 0);
+
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
     }
 
-    private void skipWhitespace() throws IOException {
+    void skipWhitespace() throws IOException {
         while (!endOfFile && Character.isWhitespace(c)) {
             next();
         }
     }
+
+    JSONParseException error(String message) {
+        return error(message, position - 1);
+    }
+
+    /**
+     * Creates the exception for a character that is still in the buffer. The line and character numbers are only
+     * derived here, to keep the bookkeeping out of the scanning of the input.
+     */
+    private JSONParseException error(String message, int index) {
+        int lineNumber = linesDropped + 1;
+        long lineStart = lastNewlineIndex;
+        for (int ix = 0; (ix <= index) && (ix < limit); ix++) {
+            if (buffer[ix] == '\n') {
+                lineNumber++;
+                lineStart = ix;
+            }
+        }
+        return new JSONParseException(message, lineNumber, (int) (index - lineStart));
+    }
 }
@@ -1,8 +1,11 @@
 package nl.jonghuis.parsing.json;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.channels.WritableByteChannel;
 import java.util.EnumSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 public class JSONEncoder {
@@ -11,9 +14,9 @@ public class JSONEncoder {
     }
 
     public static String toString(Object input) throws UnexpectedTypeException {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         try {
-            new JSONEncoder(sb, EnumSet.noneOf(Options.class)).write(input);
+            encode(input, new JSONWriter(sb));
             return sb.toString();
         } catch (IOException e) {
             // Should never be able to happen
@@ -21,161 +24,196 @@ public class JSONEncoder {
         }
     }
 
+    /**
+     * @return The value encoded as UTF-8, without creating a {@link String} first
+     */
+    public static byte[] toBytes(Object input) throws UnexpectedTypeException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            encode(input, new JSONWriter(output));
+            return output.toByteArray();
+        } catch (IOException e) {
+            // Should never be able to happen
+            throw new AssertionError(e);
+        }
+    }
+
     public static void encode(Object input, Appendable output) throws IOException, UnexpectedTypeException {
-        new JSONEncoder(output).write(input);
+        encode(input, new JSONWriter(output));
+    }
+
+    /**
+     * Writes the value encoded as UTF-8 to the channel, without flushing or closing it.
+     */
+    public static void encode(Object input, WritableByteChannel output) throws IOException, UnexpectedTypeException {
+        encode(input, new JSONWriter(output));
     }
 
-    private Appendable out;
-    private boolean pretty;
+    private static void encode(Object input, JSONWriter writer) throws IOException, UnexpectedTypeException {
+        new JSONEncoder(writer).write(input);
+        writer.release();
+    }
+
+    /**
+     * Writes the values as newline delimited JSON, one value per line, which can be read with an
+     * {@link NDJSONReader}. The output is written in large chunks, not per record.
+     */
+    public static void encodeRecords(Iterable<?> records, Appendable out) throws IOException, UnexpectedTypeException {
+        JSONWriter writer = new JSONWriter(out);
+        JSONEncoder encoder = new JSONEncoder(writer);
+        for (Object record : records) {
+            encoder.writeRecord(record);
+        }
+        writer.release();
+    }
+
+    private final JSONWriter writer;
+    // When the writer has been created by this encoder, each value is written out completely
+    private final boolean ownsWriter;
 
     public JSONEncoder(Appendable out) {
         this(out, EnumSet.noneOf(Options.class));
     }
 
     public JSONEncoder(Appendable out, EnumSet<Options> options) {
-        this.out = out;
+        writer = new JSONWriter(out, options);
+        ownsWriter = true;
+    }
 
-        if (options.contains(Options.PRETTY)) {
-            pretty = true;
-        }
+    JSONEncoder(JSONWriter writer) {
+        this.writer = writer;
+        ownsWriter = false;
     }
 
     public void write(Object input) throws IOException, UnexpectedTypeException {
-        write(input, 0);
+        writeValue(input);
+        if (ownsWriter) {
+            writer.flushBuffer();
+        }
     }
 
-    private void write(Object input, int indent) throws IOException, UnexpectedTypeException {
+    /**
+     * Writes the value as a record of newline delimited JSON, followed by a newline.
+     */
+    public void writeRecord(Object input) throws IOException, UnexpectedTypeException {
+        writeValue(input);
+        writer.endRecord();
+        if (ownsWriter) {
+            writer.flushBuffer();
+        }
+    }
+
+    /**
+     * Writes any value straight to the output. Maps, beans and records are written as objects, and lists, other
+     * iterables and arrays as arrays, without copying them into a {@link JSONObject} or {@link JSONArray} first.
+     * Enums are written as their name, and classes with a generated {@link JSONCodec} with that codec.
+     */
+    private void writeValue(Object input) throws IOException, UnexpectedTypeException {
         if (input == null) {
-            out.append("null");
+            writer.nullValue();
         } else if (input instanceof Number) {
-            out.append(input.toString());
+            writer.value((Number) input);
         } else if (input instanceof Boolean) {
-            out.append(input.toString());
+            writer.value(((Boolean) input).booleanValue());
         } else if (input instanceof CharSequence) {
-            write((CharSequence) input);
-        } else if (input instanceof List) {
-            write((List<?>) input, indent);
+            writer.value((CharSequence) input);
+        } else if (input instanceof Enum) {
+            writer.value(((Enum<?>) input).name());
+        } else if (input instanceof Character) {
+            writer.value(input.toString());
+        } else if (input instanceof Map) {
+            write((Map<?, ?>) input);
+        } else if (input instanceof Iterable) {
+            write((Iterable<?>) input);
+        } else if (input.getClass().isArray()) {
+            writeArray(input);
         } else {
-            write(JSONObject.as(input), indent);
-        }
-    }
-
-    private int write(CharSequence string) throws IOException {
-        int length = 2;
-        out.append('\"');
-        for (int ix = 0; ix < string.length(); ix++) {
-            char c = string.charAt(ix);
-            switch (c) {
-            case '"':
-                length += 2;
-                out.append("\\\"");
-                break;
-            case '\\':
-                length += 2;
-                out.append("\\\\");
-                break;
-            case '/':
-                length += 2;
-                out.append("\\/");
-                break;
-            case '\b':
-                length += 2;
-                out.append("\\b");
-                break;
-            case '\f':
-                length += 2;
-                out.append("\\f");
-                break;
-            case '\n':
-                length += 2;
-                out.append("\\n");
-                break;
-            case '\r':
-                length += 2;
-                out.append("\\r");
-                break;
-            case '\t':
-                length += 2;
-                out.append("\\t");
-                break;
-            default:
-                if (c < 16) {
-                    length += 6;
-                    out.append("\\u000" + Integer.toHexString(c));
-                } else if ((c < 32) || (c == 127)) {
-                    length += 6;
-                    out.append("\\u00" + Integer.toHexString(c));
-                } else {
-                    length += 1;
-                    out.append(c);
-                }
+            JSONCodec<Object> codec = GeneratedCodecs.of(input.getClass());
+            if (codec != null) {
+                codec.encode(input, writer);
+            } else {
+                writeBean(input);
             }
         }
-        out.append('\"');
-        return length;
     }
 
-    private void write(List<?> list, int indent) throws IOException, UnexpectedTypeException {
-        if (pretty) {
-            out.append("[ ");
-            indent += 2;
-        } else {
-            out.append('[');
+    private void write(Iterable<?> iterable) throws IOException, UnexpectedTypeException {
+        if ((iterable instanceof PrimitiveJSONArray) && ((PrimitiveJSONArray) iterable).write(writer)) {
+            return;
         }
-
-        boolean first = true;
-        for (Object object : list) {
-            if (first) {
-                first = false;
-            } else if (pretty) {
-                out.append(",\n");
-                indent(indent);
-            } else {
-                out.append(',');
-            }
-            write(object, indent);
+        writer.beginArray();
+        for (Object object : iterable) {
+            writeValue(object);
         }
-
-        out.append(']');
+        writer.endArray();
     }
 
-    private void write(JSONObject object, int indent) throws IOException, UnexpectedTypeException {
-        if (pretty) {
-            out.append("{ ");
-            indent += 2;
-        } else {
-            out.append('{');
+    private void write(Map<?, ?> map) throws IOException, UnexpectedTypeException {
+        writer.beginObject();
+        String[] keys = map instanceof CompactJSONObject ? ((CompactJSONObject) map).keys() : null;
+        if (keys != null) {
+            for (int ix = 0; ix < keys.length; ix++) {
+                writer.name(keys[ix]);
+                writeValue(((CompactJSONObject) map).value(ix));
+            }
+            writer.endObject();
+            return;
+        }
+        for (Entry<?, ?> entry : map.entrySet()) {
+            writer.name(entry.getKey().toString());
+            writeValue(entry.getValue());
         }
+        writer.endObject();
+    }
 
-        boolean first = true;
-        for (Entry<String, Object> entry : object.entrySet()) {
-            if (first) {
-                first = false;
-            } else if (pretty) {
-                out.append(",\n");
-                indent(indent);
-            } else {
-                out.append(',');
+    private void writeArray(Object array) throws IOException, UnexpectedTypeException {
+        writer.beginArray();
+        if (array instanceof int[]) {
+            for (int value : (int[]) array) {
+                writer.value(value);
             }
-
-            int keySize = write(entry.getKey());
-
-            if (pretty) {
-                keySize += 3;
-                out.append(" : ");
-            } else {
-                out.append(':');
+        } else if (array instanceof long[]) {
+            for (long value : (long[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof double[]) {
+            for (double value : (double[]) array) {
+                writer.value(value);
+            }
+        } else if (array instanceof Object[]) {
+            for (Object value : (Object[]) array) {
+                writeValue(value);
+            }
+        } else {
+            for (int ix = 0; ix < Array.getLength(array); ix++) {
+                writeValue(Array.get(array, ix));
             }
-
-            write(entry.getValue(), indent + keySize);
         }
-
-        out.append('}');
+        writer.endArray();
     }
 
-    private void indent(int indent) throws IOException {
-        for (int ix = 0; ix < indent; ix++) {
-            out.append(' ');
+    /**
+     * Writes the properties of a bean or record, with the getters of its {@link ClassBinding}. Just like in a
+     * {@link JSONObject}, properties whose getter fails are left out.
+     */
+    private void writeBean(Object bean) throws IOException, UnexpectedTypeException {
+        ClassBinding binding = ClassBinding.of(bean.getClass());
+        writer.beginObject();
+        boolean empty = true;
+        for (ClassBinding.Property property : binding.properties) {
+            Object value;
+            try {
+                value = property.getter.apply(bean);
+            } catch (Exception e) {
+                continue;
+            }
+            writer.name(property.name);
+            writeValue(value);
+            empty = false;
+        }
+        if (empty) {
+            throw new UnexpectedTypeException("a JavaBean object", bean.getClass().getName());
         }
+        writer.endObject();
     }
 }
@@ -0,0 +1,49 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+
+/**
+ * Receives the contents of a JSON document while it is being parsed by {@link JSONDecoder#parseValue(JSONHandler)}.
+ * Whole numbers are reported as an int or long (depending on the number of digits, just like the tree would contain
+ * an Integer or a Long), decimal numbers as a double. Only numbers that do not fit in those are reported as a
+ * {@link java.math.BigInteger} or {@link java.math.BigDecimal}.
+ *
+ * All methods do nothing by default, so a handler only has to implement the events it is interested in.
+ */
+public interface JSONHandler {
+    default void startObject() throws IOException {
+    }
+
+    default void name(String name) throws IOException {
+    }
+
+    default void endObject() throws IOException {
+    }
+
+    default void startArray() throws IOException {
+    }
+
+    default void endArray() throws IOException {
+    }
+
+    default void value(String value) throws IOException {
+    }
+
+    default void value(int value) throws IOException {
+    }
+
+    default void value(long value) throws IOException {
+    }
+
+    default void value(double value) throws IOException {
+    }
+
+    default void value(Number value) throws IOException {
+    }
+
+    default void value(boolean value) throws IOException {
+    }
+
+    default void nullValue() throws IOException {
+    }
+}
@@ -0,0 +1,90 @@
+package nl.jonghuis.parsing.json;
+
+/**
+ * A bounded table of canonical String instances for the keys of objects. When a {@link JSONDecoder} uses a cache
+ * (see {@link JSONDecoder#withKeyCache(JSONKeyCache)}), keys that have been seen before are looked up directly from
+ * the input, without creating a new String. Parsing many objects with the same fields then results in a single
+ * instance of each field name.
+ *
+ * The table is direct mapped: a key replaces whatever other key was stored at the same position. A cache can be
+ * shared by decoders on different threads without any locking. Strings are immutable, so the worst that can happen
+ * in a race is that a key is stored twice, or that a lookup misses.
+ */
+public final class JSONKeyCache {
+    private static final int DEFAULT_SIZE = 1024;
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final String[] keys;
+    private final int mask;
+
+    // The shapes of compact objects, see JSONDecoder.compactObjects()
+    final CompactJSONObject.Shape shapes = CompactJSONObject.Shape.root();
+
+    public JSONKeyCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size
+     *            The maximum number of keys to keep, rounded up to a power of two
+     */
+    public JSONKeyCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size of the cache must be positive");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        keys = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param hash
+     *            The hash of the characters, as it would be calculated by {@link String#hashCode()}
+     * @return The canonical String with the given characters
+     */
+    String get(char[] chars, int offset, int length, int hash) {
+        if (length > MAX_KEY_LENGTH) {
+            return new String(chars, offset, length);
+        }
+
+        int index = spread(hash) & mask;
+        String key = keys[index];
+        if ((key != null) && (key.length() == length)) {
+            int ix = 0;
+            while ((ix < length) && (key.charAt(ix) == chars[offset + ix])) {
+                ix++;
+            }
+            if (ix == length) {
+                return key;
+            }
+        }
+
+        key = new String(chars, offset, length);
+        keys[index] = key;
+        return key;
+    }
+
+    /**
+     * @return The canonical instance of the key
+     */
+    public String intern(String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            return key;
+        }
+
+        int index = spread(key.hashCode()) & mask;
+        String cached = keys[index];
+        if (key.equals(cached)) {
+            return cached;
+        }
+        keys[index] = key;
+        return key;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
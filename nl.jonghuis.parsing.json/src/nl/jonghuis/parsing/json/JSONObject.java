@@ -2,15 +2,15 @@ package nl.jonghuis.parsing.json;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -20,23 +20,56 @@ public class JSONObject extends LinkedHashMap<String, Object> {
 
     public static final JSONObject from(String json) throws JSONParseException {
         try {
-            return from(new StringReader(json));
+            return new JSONDecoder(json).parseObject();
         } catch (JSONParseException e) {
             throw e;
         } catch (IOException e) {
-            // Should never be possible using the StringReader
+            // Should never be possible when parsing from a string
             throw new AssertionError(e);
         }
     }
 
     public static final JSONObject from(InputStream input) throws IOException {
-        return from(new InputStreamReader(input));
+        return new JSONDecoder(input).parseObject();
+    }
+
+    public static final JSONObject from(byte[] bytes) throws IOException {
+        return new JSONDecoder(bytes).parseObject();
+    }
+
+    public static final JSONObject from(ByteBuffer bytes) throws IOException {
+        return new JSONDecoder(bytes).parseObject();
+    }
+
+    public static final JSONObject from(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new JSONDecoder(channel).parseObject();
+        }
     }
 
     public static final JSONObject from(Reader reader) throws IOException {
         return new JSONDecoder(reader).parseObject();
     }
 
+    /**
+     * Parses the JSON in lazy mode, where the values are only parsed when they are accessed. This is a lot cheaper when
+     * only a few values of a large document are used. See {@link JSONDecoder#lazy()} for the details.
+     */
+    public static final JSONObject lazy(String json) throws JSONParseException {
+        try {
+            return new JSONDecoder(json).lazy().parseObject();
+        } catch (JSONParseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Should never be possible when parsing from a string
+            throw new AssertionError(e);
+        }
+    }
+
+    public static final JSONObject lazy(byte[] bytes) throws IOException {
+        return new JSONDecoder(bytes).lazy().parseObject();
+    }
+
     public static final JSONObject as(Object value) throws UnexpectedTypeException {
         if (value instanceof JSONObject) {
             return (JSONObject) value;
@@ -56,48 +89,15 @@ public class JSONObject extends LinkedHashMap<String, Object> {
         }
     }
 
+    /**
+     * Creates an object with the properties of a JavaBean or record. The properties of each class are only looked up
+     * once.
+     */
     public JSONObject(Object source) throws UnexpectedTypeException {
         if (source == null) {
             throw new UnexpectedTypeException("a JavaBean object", "null");
         }
-
-        Class<? extends Object> clazz = source.getClass();
-
-        for (Method method : clazz.getMethods()) {
-            if ((method.getReturnType() != Void.TYPE)
-                && (method.getParameterTypes().length == 0)
-                && Modifier.isPublic(method.getModifiers())) {
-                String name = method.getName();
-                if (name.equals("getClass")) {
-                    continue;
-                } else if ((name.length() >= 4) && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
-                    name = Character.toLowerCase(name.charAt(3)) + name.substring(4);
-                    try {
-                        Object value = method.invoke(source);
-                        if ((value instanceof Number) || (value instanceof String)) {
-                            put(name, value);
-                        } else if (value instanceof Collection) {
-                            put(name, JSONArray.as(value));
-                        } else {
-                            put(name, JSONObject.as(value));
-                        }
-                    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                        // Ignored
-                    }
-                } else if ((name.length() >= 3) && name.startsWith("is") && (method.getReturnType() == Boolean.TYPE)) {
-                    try {
-                        Object value = method.invoke(source);
-                        put(name, value);
-                    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                        // Ignored
-                    }
-                }
-            }
-        }
-
-        if (isEmpty()) {
-            throw new UnexpectedTypeException("a JavaBean object", clazz.getName());
-        }
+        ClassBinding.of(source.getClass()).read(source, this);
     }
 
     public JSONObject $(String key, Object value) {
@@ -122,35 +122,12 @@ public class JSONObject extends LinkedHashMap<String, Object> {
         }
     }
 
+    /**
+     * Creates an object of the class with a public constructor that accepts a JSONObject, or else with the canonical
+     * constructor of a record. The constructor of each class is only looked up once.
+     */
     public <T> T as(Class<T> clazz) throws UnexpectedTypeException {
-        // Try to find a constructor that accepts a JSONObject
-        try {
-            Constructor<T> constructor = clazz.getConstructor(JSONObject.class);
-            return constructor.newInstance(this);
-        } catch (InstantiationException ex) {
-            Throwable cause = ex.getCause();
-            if (cause instanceof UnexpectedTypeException) {
-                throw (UnexpectedTypeException) cause;
-            }
-            // Else it failed for some other reason...
-
-            throw new UnexpectedTypeException("Could not find a way to create a "
-                                              + clazz
-                                              + " from this object: "
-                                              + toJson(),
-                                              ex);
-        } catch (NoSuchMethodException
-                 | SecurityException
-                 | IllegalAccessException
-                 | IllegalArgumentException
-                 | InvocationTargetException ex) {
-            // Failed, try the next case
-            throw new UnexpectedTypeException("Could not find a way to create a "
-                                              + clazz
-                                              + " from this object: "
-                                              + toJson(),
-                                              ex);
-        }
+        return clazz.cast(ClassBinding.of(clazz).create(this));
     }
 
     public JSONObject getObject(String key) throws UnexpectedTypeException {
@@ -174,7 +151,7 @@ public class JSONObject extends LinkedHashMap<String, Object> {
     }
 
     public double getDouble(String key) throws UnexpectedTypeException {
-        return getNumber(key).longValue();
+        return getNumber(key).doubleValue();
     }
 
     public BigInteger getBigInteger(String key) throws UnexpectedTypeException {
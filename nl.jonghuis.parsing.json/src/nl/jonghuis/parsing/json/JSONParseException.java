@@ -5,15 +5,59 @@ import java.io.IOException;
 public class JSONParseException extends IOException {
     private static final long serialVersionUID = -7836090288074585431L;
 
+    private final String reason;
+    private final long recordNumber;
     private final int lineNumber;
     private final int charNumber;
 
     public JSONParseException(String message, int lineNumber, int charNumber) {
-        super(message + " @ line " + lineNumber + " character " + charNumber);
+        this(message, 0, lineNumber, charNumber);
+    }
+
+    /**
+     * @param recordNumber
+     *            The number of the value in a stream of values (see {@link NDJSONReader}), starting at 1, or 0 when
+     *            the error is not part of a stream
+     */
+    public JSONParseException(String message, long recordNumber, int lineNumber, int charNumber) {
+        super(message + (recordNumber > 0 ? " in record " + recordNumber : "")
+              + " @ line "
+              + lineNumber
+              + " character "
+              + charNumber);
+        reason = message;
+        this.recordNumber = recordNumber;
         this.lineNumber = lineNumber;
         this.charNumber = charNumber;
     }
 
+    /**
+     * @return The same error, found in the given record of a stream of values
+     */
+    JSONParseException inRecord(long recordNumber) {
+        return inRecord(recordNumber, 0, 0);
+    }
+
+    /**
+     * @return The same error, found in the given record of a stream of values, by a decoder that started reading
+     *         after the given number of lines and characters
+     */
+    JSONParseException inRecord(long recordNumber, int linesBefore, int charsBefore) {
+        JSONParseException result = new JSONParseException(reason,
+                                                           recordNumber,
+                                                           lineNumber + linesBefore,
+                                                           lineNumber == 1 ? charNumber + charsBefore : charNumber);
+        result.setStackTrace(getStackTrace());
+        return result;
+    }
+
+    /**
+     * @return The number of the value in a stream of values where the error was found, or 0 when unknown
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
     public int getLineNumber() {
         return lineNumber;
     }
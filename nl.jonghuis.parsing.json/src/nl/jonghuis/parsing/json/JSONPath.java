@@ -0,0 +1,243 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled path into a JSON document, that selects values directly while scanning the input. Everything outside
+ * of the path is skipped by the scanner without building any objects, and the names of fields are compared in the
+ * buffer, so getting a few values from a large document costs little more than reading it.
+ *
+ * The supported subset of JSONPath is the root <code>$</code>, followed by any number of:
+ * <ul>
+ * <li><code>.name</code> or <code>['name']</code> for a field of an object</li>
+ * <li><code>[3]</code> for an element of an array</li>
+ * <li><code>.*</code> or <code>[*]</code> for all the fields of an object or all the elements of an array</li>
+ * </ul>
+ *
+ * <pre>
+ * JSONPath path = JSONPath.compile("$.payload.user.id");
+ * List&lt;Object&gt; ids = path.select(event);
+ * </pre>
+ *
+ * Just like the {@link JSONReader}, duplicate keys are not detected. A path can be used by multiple threads at the
+ * same time.
+ */
+public final class JSONPath {
+    private static final int WILDCARD = -1;
+
+    private final String path;
+    // For each step either a name, an index or the wildcard
+    private final String[] names;
+    private final int[] indexes;
+
+    private JSONPath(String path, String[] names, int[] indexes) {
+        this.path = path;
+        this.names = names;
+        this.indexes = indexes;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             When the path is not in the supported subset
+     */
+    public static JSONPath compile(String path) {
+        if (!path.startsWith("$")) {
+            throw new IllegalArgumentException("A path must start with $: " + path);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        int ix = 1;
+        while (ix < path.length()) {
+            int end;
+            if (path.charAt(ix) == '.') {
+                end = ix + 1;
+                while ((end < path.length()) && (path.charAt(end) != '.') && (path.charAt(end) != '[')) {
+                    end++;
+                }
+                String name = path.substring(ix + 1, end);
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Missing name at position " + ix + ": " + path);
+                }
+                names.add("*".equals(name) ? null : name);
+                indexes.add(WILDCARD);
+            } else if (path.charAt(ix) == '[') {
+                end = path.indexOf(']', ix);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Missing ] after position " + ix + ": " + path);
+                }
+                String selector = path.substring(ix + 1, end++);
+                if ("*".equals(selector)) {
+                    names.add(null);
+                    indexes.add(WILDCARD);
+                } else if ((selector.length() >= 2)
+                           && ((selector.charAt(0) == '\'') || (selector.charAt(0) == '"'))
+                           && (selector.charAt(selector.length() - 1) == selector.charAt(0))) {
+                    names.add(selector.substring(1, selector.length() - 1));
+                    indexes.add(WILDCARD);
+                } else {
+                    names.add(null);
+                    indexes.add(parseIndex(selector, path));
+                }
+            } else {
+                throw new IllegalArgumentException("Unexpected character '" + path.charAt(ix)
+                                                   + "' at position "
+                                                   + ix
+                                                   + ": "
+                                                   + path);
+            }
+            ix = end;
+        }
+
+        int[] indexArray = new int[indexes.size()];
+        for (int step = 0; step < indexArray.length; step++) {
+            indexArray[step] = indexes.get(step);
+        }
+        return new JSONPath(path, names.toArray(new String[names.size()]), indexArray);
+    }
+
+    private static int parseIndex(String selector, String path) {
+        try {
+            int index = Integer.parseInt(selector);
+            if (index >= 0) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid index [" + selector + "]: " + path);
+    }
+
+    /**
+     * Selects the values from the next value of the decoder, after which the decoder is positioned after that value.
+     *
+     * @return The matched values in the order of the document, which is empty when nothing matches
+     */
+    public List<Object> select(JSONDecoder decoder) throws IOException {
+        List<Object> matches = new ArrayList<>();
+        select(decoder, 0, matches, Integer.MAX_VALUE);
+        return matches;
+    }
+
+    public List<Object> select(String json) throws JSONParseException {
+        try {
+            return select(new JSONDecoder(json));
+        } catch (JSONParseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Should never be possible when parsing from a string
+            throw new AssertionError(e);
+        }
+    }
+
+    public List<Object> select(byte[] bytes) throws IOException {
+        return select(new JSONDecoder(bytes));
+    }
+
+    public List<Object> select(InputStream input) throws IOException {
+        return select(new JSONDecoder(input));
+    }
+
+    /**
+     * Selects the first matching value and stops reading there, so the rest of the input is not checked. The decoder
+     * is left right after the match.
+     *
+     * @return The first matched value, or null when nothing matches
+     */
+    public Object first(JSONDecoder decoder) throws IOException {
+        List<Object> matches = new ArrayList<>(1);
+        select(decoder, 0, matches, 1);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    public Object first(String json) throws JSONParseException {
+        try {
+            return first(new JSONDecoder(json));
+        } catch (JSONParseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Should never be possible when parsing from a string
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Matches the current value of the decoder against the step of the path. The recursion is limited by the length
+     * of the path, anything deeper is either parsed or skipped as a whole.
+     */
+    private void select(JSONDecoder decoder, int step, List<Object> matches, int max) throws IOException {
+        if (step == names.length) {
+            matches.add(decoder.parseValue());
+            return;
+        }
+
+        decoder.checkEndOfFile();
+        String name = names[step];
+        int index = indexes[step];
+        if ((decoder.current() == '{') && (index == WILDCARD)) {
+            decoder.consume('{', "start of object");
+            decoder.skipWhitespace();
+            boolean first = true;
+            while (decoder.current() != '}') {
+                if (first) {
+                    first = false;
+                } else {
+                    decoder.consume(',', "a comma");
+                    decoder.skipWhitespace();
+                }
+
+                boolean selected;
+                if (name == null) {
+                    decoder.skipString();
+                    selected = true;
+                } else {
+                    selected = decoder.matchName(name);
+                }
+                decoder.consume(':', "colon");
+                decoder.skipWhitespace();
+                if (selected) {
+                    select(decoder, step + 1, matches, max);
+                    if (matches.size() >= max) {
+                        return;
+                    }
+                } else {
+                    decoder.skipValue();
+                }
+            }
+            decoder.consume('}', "end of object");
+            decoder.skipWhitespace();
+        } else if ((decoder.current() == '[') && (name == null)) {
+            decoder.consume('[', "start of array");
+            decoder.skipWhitespace();
+            int element = 0;
+            while (decoder.current() != ']') {
+                if (element > 0) {
+                    decoder.consume(',', "a comma");
+                    decoder.skipWhitespace();
+                }
+
+                if ((index == WILDCARD) || (index == element)) {
+                    select(decoder, step + 1, matches, max);
+                    if (matches.size() >= max) {
+                        return;
+                    }
+                } else {
+                    decoder.skipValue();
+                }
+                element++;
+            }
+            decoder.consume(']', "end of array");
+            decoder.skipWhitespace();
+        } else {
+            decoder.skipValue();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,327 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A pull parser that reads JSON one token at a time, using the scanning of a {@link JSONDecoder}. Only the nesting
+ * of the current position is kept, so a document of any size can be read in constant memory. Unlike the tree
+ * building decoder, duplicate keys are not detected, since that would mean remembering all the keys.
+ *
+ * <pre>
+ * JSONReader reader = new JSONReader(input);
+ * reader.nextToken(); // START_ARRAY
+ * while (reader.nextToken() == Token.START_OBJECT) {
+ *     JSONObject record = reader.readObject();
+ * }
+ * </pre>
+ */
+public class JSONReader {
+    public static enum Token {
+                              START_OBJECT,
+                              END_OBJECT,
+                              START_ARRAY,
+                              END_ARRAY,
+                              NAME,
+                              STRING,
+                              NUMBER,
+                              TRUE,
+                              FALSE,
+                              NULL
+    }
+
+    // What is expected next in each of the containers that are open
+    private static final byte EMPTY_OBJECT = 0;
+    private static final byte NONEMPTY_OBJECT = 1;
+    private static final byte DANGLING_NAME = 2;
+    private static final byte EMPTY_ARRAY = 3;
+    private static final byte NONEMPTY_ARRAY = 4;
+
+    private final JSONDecoder decoder;
+
+    private byte[] scopes = new byte[32];
+    private String[] names = new String[33];
+    private int depth = 0;
+
+    private Token token;
+    private String string;
+    // The kind of number that the decoder has scanned for the current token, or -1
+    private int numberKind = -1;
+
+    public JSONReader(JSONDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    public JSONReader(Reader reader) throws IOException {
+        this(new JSONDecoder(reader));
+    }
+
+    public JSONReader(InputStream input) throws IOException {
+        this(new JSONDecoder(input));
+    }
+
+    public JSONReader(String json) throws IOException {
+        this(new JSONDecoder(json));
+    }
+
+    /**
+     * Moves to the next token. After the last token of a value at the top level, the next value is read if there is
+     * more input.
+     *
+     * @return The next token, or null when the end of the input has been reached
+     */
+    public Token nextToken() throws IOException {
+        string = null;
+        numberKind = -1;
+
+        if (depth == 0) {
+            names[0] = null;
+            if (decoder.isEndOfFile()) {
+                return token = null;
+            }
+            return token = readValueToken();
+        }
+
+        switch (scopes[depth - 1]) {
+        case EMPTY_OBJECT:
+            if (decoder.current() == '}') {
+                return token = close();
+            }
+            return token = readName();
+        case NONEMPTY_OBJECT:
+            if (decoder.current() == '}') {
+                return token = close();
+            }
+            decoder.consume(',', "a comma");
+            decoder.skipWhitespace();
+            return token = readName();
+        case DANGLING_NAME:
+            scopes[depth - 1] = NONEMPTY_OBJECT;
+            return token = readValueToken();
+        case EMPTY_ARRAY:
+            if (decoder.current() == ']') {
+                return token = close();
+            }
+            scopes[depth - 1] = NONEMPTY_ARRAY;
+            return token = readValueToken();
+        default:
+            if (decoder.current() == ']') {
+                return token = close();
+            }
+            decoder.consume(',', "a comma");
+            decoder.skipWhitespace();
+            return token = readValueToken();
+        }
+    }
+
+    private Token readName() throws IOException {
+        string = decoder.parseName();
+        names[depth] = string;
+        decoder.consume(':', "colon");
+        decoder.skipWhitespace();
+        scopes[depth - 1] = DANGLING_NAME;
+        return Token.NAME;
+    }
+
+    private Token readValueToken() throws IOException {
+        decoder.checkEndOfFile();
+
+        switch (decoder.current()) {
+        case '{':
+            decoder.consume('{', "start of object");
+            decoder.skipWhitespace();
+            push(EMPTY_OBJECT);
+            return Token.START_OBJECT;
+        case '[':
+            decoder.consume('[', "start of array");
+            decoder.skipWhitespace();
+            push(EMPTY_ARRAY);
+            return Token.START_ARRAY;
+        case '"':
+            string = decoder.parseString();
+            return Token.STRING;
+        case 't':
+            decoder.parseTrue();
+            return Token.TRUE;
+        case 'f':
+            decoder.parseFalse();
+            return Token.FALSE;
+        case 'n':
+            decoder.parseNull();
+            return Token.NULL;
+        default:
+            if ((decoder.current() == '-') || ((decoder.current() >= '0') && (decoder.current() <= '9'))) {
+                numberKind = decoder.scanNumber();
+                return Token.NUMBER;
+            }
+            throw decoder.error("Unexpected character '" + decoder.current() + "' found");
+        }
+    }
+
+    private void push(byte scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+            names = Arrays.copyOf(names, depth * 2 + 1);
+        }
+        scopes[depth++] = scope;
+        names[depth] = null;
+    }
+
+    private Token close() throws IOException {
+        Token result = scopes[depth - 1] <= DANGLING_NAME ? Token.END_OBJECT : Token.END_ARRAY;
+        decoder.consume(result == Token.END_OBJECT ? '}' : ']', "end of container");
+        decoder.skipWhitespace();
+        depth--;
+        return result;
+    }
+
+    /**
+     * @return The token that was last returned by {@link #nextToken()}
+     */
+    public Token currentToken() {
+        return token;
+    }
+
+    /**
+     * @return The name of the field the current token belongs to, or null when it is not part of an object
+     */
+    public String currentName() {
+        if ((token == Token.START_OBJECT) || (token == Token.START_ARRAY)) {
+            return names[depth - 1];
+        }
+        return names[depth];
+    }
+
+    /**
+     * @return The number of containers the reader is currently in
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * When the current token starts an object or array, skips ahead to its matching end token, using
+     * {@link JSONDecoder#skipValue()} without producing the tokens in between. For any other token nothing happens.
+     */
+    public JSONReader skipChildren() throws IOException {
+        if ((token == Token.START_OBJECT) || (token == Token.START_ARRAY)) {
+            boolean object = token == Token.START_OBJECT;
+            decoder.skipContainerContents(object);
+            depth--;
+            token = object ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        return this;
+    }
+
+    public String getString() throws UnexpectedTypeException {
+        if (string == null) {
+            throw new UnexpectedTypeException("a string", String.valueOf(token));
+        }
+        return string;
+    }
+
+    public Number getNumber() throws UnexpectedTypeException {
+        checkNumber();
+        return boxNumber();
+    }
+
+    private void checkNumber() throws UnexpectedTypeException {
+        if (numberKind < 0) {
+            throw new UnexpectedTypeException("a number", String.valueOf(token));
+        }
+    }
+
+    private Number boxNumber() {
+        switch (numberKind) {
+        case JSONDecoder.INT_NUMBER:
+            return (int) decoder.longValue;
+        case JSONDecoder.LONG_NUMBER:
+            return decoder.longValue;
+        case JSONDecoder.DOUBLE_NUMBER:
+            return decoder.doubleValue;
+        default:
+            return decoder.bigValue;
+        }
+    }
+
+    /**
+     * @return The number converted like {@link Number#intValue()}, so a decimal number outside the range saturates
+     */
+    public int getInt() throws UnexpectedTypeException {
+        checkNumber();
+        return TypeReader.intValue(decoder, numberKind);
+    }
+
+    public long getLong() throws UnexpectedTypeException {
+        checkNumber();
+        return TypeReader.longValue(decoder, numberKind);
+    }
+
+    public double getDouble() throws UnexpectedTypeException {
+        checkNumber();
+        return TypeReader.doubleValue(decoder, numberKind);
+    }
+
+    public BigInteger getBigInteger() throws UnexpectedTypeException {
+        Number value = getNumber();
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        } else {
+            return new BigInteger(value.toString());
+        }
+    }
+
+    public boolean getBoolean() throws UnexpectedTypeException {
+        if (token == Token.TRUE) {
+            return true;
+        } else if (token == Token.FALSE) {
+            return false;
+        } else {
+            throw new UnexpectedTypeException("a boolean", String.valueOf(token));
+        }
+    }
+
+    /**
+     * Reads the complete value that starts at the current token into a tree of {@link JSONObject}s and
+     * {@link JSONArray}s. When the value is an object or array, the reader is positioned on its end token.
+     */
+    public Object readValue() throws IOException {
+        if (token == null) {
+            throw new IllegalStateException("No current token to read a value from");
+        }
+
+        switch (token) {
+        case START_OBJECT:
+            depth--;
+            token = Token.END_OBJECT;
+            return decoder.parseObjectContents();
+        case START_ARRAY:
+            depth--;
+            token = Token.END_ARRAY;
+            return decoder.parseArrayContents();
+        case STRING:
+            return string;
+        case NUMBER:
+            return boxNumber();
+        case TRUE:
+            return true;
+        case FALSE:
+            return false;
+        case NULL:
+            return null;
+        default:
+            throw new IllegalStateException("Can not read a value from a " + token + " token");
+        }
+    }
+
+    public JSONObject readObject() throws IOException, UnexpectedTypeException {
+        return JSONObject.as(readValue());
+    }
+
+    public JSONArray readArray() throws IOException, UnexpectedTypeException {
+        return JSONArray.as(readValue());
+    }
+}
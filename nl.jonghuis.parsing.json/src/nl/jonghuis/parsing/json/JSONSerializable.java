@@ -0,0 +1,21 @@
+package nl.jonghuis.parsing.json;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the annotation processor in <code>nl.jonghuis.parsing.json.processor</code> generates a
+ * {@link JSONCodec} at compile time. The {@link JSONEncoder} and {@link JSONDecoder#parseValue(Class)} then use the
+ * generated code instead of looking up the getters, setters and constructors of the class at runtime.
+ *
+ * The generated codec reads and writes the same JSON as the reflective binding, except that a getter that throws an
+ * exception is not left out, but fails the encoding.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JSONSerializable {
+}
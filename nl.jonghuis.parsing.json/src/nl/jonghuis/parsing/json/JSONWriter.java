@@ -0,0 +1,453 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import nl.jonghuis.parsing.json.JSONEncoder.Options;
+
+/**
+ * Generates JSON incrementally, without having to build the whole document first. The output is collected in a
+ * fixed size buffer that is written to the underlying output in large chunks, so the memory used does not depend on
+ * the size of the document. Call {@link #flush()} or {@link #close()} when done, to write the last part.
+ *
+ * A null {@link String}, {@link Number} or other object is written as null, but a literal <code>value(null)</code>
+ * does not compile, since it matches more than one of the overloads. Use {@link #nullValue()} for that instead.
+ *
+ * <pre>
+ * JSONWriter writer = new JSONWriter(output);
+ * writer.beginArray();
+ * for (Record record : records) {
+ *     writer.beginObject().name("id").value(record.getId()).name("parent").nullValue().endObject();
+ * }
+ * writer.endArray().close();
+ * </pre>
+ */
+public class JSONWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 8192;
+
+    // What is expected next in each of the containers that are open
+    private static final byte EMPTY_OBJECT = 0;
+    private static final byte NONEMPTY_OBJECT = 1;
+    private static final byte DANGLING_NAME = 2;
+    private static final byte EMPTY_ARRAY = 3;
+    private static final byte NONEMPTY_ARRAY = 4;
+
+    // How each ASCII character is escaped in strings, or null when it is written as is
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 32; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES[127] = "\\u007f";
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['/'] = "\\/";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+    }
+
+    private final Appendable out;
+    private final boolean pretty;
+
+    private char[] buffer = BufferRecycler.chars(BUFFER_SIZE);
+    private int count = 0;
+
+    private byte[] scopes = new byte[32];
+    // The indentation of the contents of each container
+    private int[] indents = new int[32];
+    private int depth = 0;
+    // The indentation for the next value, when it starts a container
+    private int valueIndent = 0;
+
+    public JSONWriter(Appendable out) {
+        this(out, EnumSet.noneOf(Options.class));
+    }
+
+    public JSONWriter(Appendable out, EnumSet<Options> options) {
+        this.out = out;
+        pretty = options.contains(Options.PRETTY);
+    }
+
+    /**
+     * Creates a writer that writes UTF-8 encoded JSON to the stream. The characters are encoded straight into a byte
+     * buffer, which is written to the stream in large chunks.
+     */
+    public JSONWriter(OutputStream out) {
+        this(out, EnumSet.noneOf(Options.class));
+    }
+
+    public JSONWriter(OutputStream out, EnumSet<Options> options) {
+        this(new UTF8Writer(out), options);
+    }
+
+    /**
+     * Creates a writer that writes UTF-8 encoded JSON to the channel.
+     */
+    public JSONWriter(WritableByteChannel out) {
+        this(out, EnumSet.noneOf(Options.class));
+    }
+
+    public JSONWriter(WritableByteChannel out, EnumSet<Options> options) {
+        this(new UTF8Writer(out), options);
+    }
+
+    public JSONWriter beginObject() throws IOException {
+        beforeValue();
+        if (pretty) {
+            append("{ ");
+        } else {
+            append('{');
+        }
+        push(EMPTY_OBJECT);
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        if ((depth == 0) || (scopes[depth - 1] > NONEMPTY_OBJECT)) {
+            throw new IllegalStateException("Can not end an object here");
+        }
+        depth--;
+        append('}');
+        return this;
+    }
+
+    public JSONWriter beginArray() throws IOException {
+        beforeValue();
+        if (pretty) {
+            append("[ ");
+        } else {
+            append('[');
+        }
+        push(EMPTY_ARRAY);
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        if ((depth == 0) || (scopes[depth - 1] < EMPTY_ARRAY)) {
+            throw new IllegalStateException("Can not end an array here");
+        }
+        depth--;
+        append(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next field in an object, which must be followed by its value.
+     */
+    public JSONWriter name(CharSequence name) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Can not write a name outside of an object");
+        }
+
+        switch (scopes[depth - 1]) {
+        case EMPTY_OBJECT:
+            break;
+        case NONEMPTY_OBJECT:
+            separator();
+            break;
+        default:
+            throw new IllegalStateException("Can not write a name here, expected a value");
+        }
+        scopes[depth - 1] = DANGLING_NAME;
+
+        int keySize = string(name);
+        if (pretty) {
+            keySize += 3;
+            append(" : ");
+        } else {
+            append(':');
+        }
+        valueIndent = indents[depth - 1] + keySize;
+        return this;
+    }
+
+    public JSONWriter value(CharSequence value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JSONWriter value(int value) throws IOException {
+        return value((long) value);
+    }
+
+    public JSONWriter value(long value) throws IOException {
+        beforeValue();
+        reserve(NumberWriter.MAX_LENGTH);
+        count = NumberWriter.write(value, buffer, count);
+        return this;
+    }
+
+    /**
+     * Writes the shortest decimal that is read back as the same double. Like {@link Double#toString}, NaN and the
+     * infinities are written as is, which is not valid JSON.
+     */
+    public JSONWriter value(double value) throws IOException {
+        beforeValue();
+        reserve(NumberWriter.MAX_LENGTH);
+        count = NumberWriter.write(value, buffer, count);
+        return this;
+    }
+
+    /**
+     * Writes the value like {@link Float#toString}, so it is not widened to a double with more digits.
+     */
+    public JSONWriter value(float value) throws IOException {
+        beforeValue();
+        append(Float.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes the number. Integers, longs and doubles are written without creating a {@link String} first.
+     */
+    public JSONWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        } else if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short)
+                   || (value instanceof Byte)) {
+            return value(value.longValue());
+        } else if (value instanceof Double) {
+            return value(value.doubleValue());
+        } else if (value instanceof Float) {
+            return value(value.floatValue());
+        }
+        beforeValue();
+        append(value.toString());
+        return this;
+    }
+
+    public JSONWriter value(boolean value) throws IOException {
+        beforeValue();
+        append(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes null, which can not be done with a literal <code>value(null)</code>, since that is ambiguous.
+     */
+    public JSONWriter nullValue() throws IOException {
+        beforeValue();
+        append("null");
+        return this;
+    }
+
+    /**
+     * Writes a complete value, which can be anything the {@link JSONEncoder} can write.
+     */
+    public JSONWriter value(Object value) throws IOException, UnexpectedTypeException {
+        new JSONEncoder(this).write(value);
+        return this;
+    }
+
+    /**
+     * Ends a record of newline delimited JSON (see {@link NDJSONReader}) with a newline, after a complete value has
+     * been written. This can only be done when not pretty printing, since the records must not contain newlines
+     * themselves.
+     */
+    public JSONWriter endRecord() throws IOException {
+        if (depth > 0) {
+            throw new IllegalStateException("Can not end a record inside of a container");
+        }
+        if (pretty) {
+            throw new IllegalStateException("Can not end a record when pretty printing");
+        }
+        append('\n');
+        return this;
+    }
+
+    /**
+     * @return The number of containers that are currently open
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    private void beforeValue() throws IOException {
+        if (depth == 0) {
+            valueIndent = 0;
+            return;
+        }
+
+        switch (scopes[depth - 1]) {
+        case DANGLING_NAME:
+            scopes[depth - 1] = NONEMPTY_OBJECT;
+            break;
+        case EMPTY_ARRAY:
+            scopes[depth - 1] = NONEMPTY_ARRAY;
+            valueIndent = indents[depth - 1];
+            break;
+        case NONEMPTY_ARRAY:
+            separator();
+            valueIndent = indents[depth - 1];
+            break;
+        default:
+            throw new IllegalStateException("Can not write a value here, expected a name");
+        }
+    }
+
+    private void separator() throws IOException {
+        if (pretty) {
+            append(",\n");
+            for (int ix = indents[depth - 1]; ix > 0; ix--) {
+                append(' ');
+            }
+        } else {
+            append(',');
+        }
+    }
+
+    private void push(byte scope) {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+            indents = Arrays.copyOf(indents, depth * 2);
+        }
+        scopes[depth] = scope;
+        indents[depth] = pretty ? valueIndent + 2 : 0;
+        depth++;
+    }
+
+    /**
+     * Writes the escaped string, including the quotes. The runs of characters between the ones that must be escaped
+     * are copied into the buffer at once.
+     *
+     * @return The number of characters that have been written
+     */
+    private int string(CharSequence string) throws IOException {
+        int length = string.length();
+        int written = length + 2;
+        append('\"');
+        int start = 0;
+        for (int ix = 0; ix < length; ix++) {
+            char c = string.charAt(ix);
+            if ((c < ESCAPES.length) && (ESCAPES[c] != null)) {
+                append(string, start, ix);
+                String escape = ESCAPES[c];
+                written += escape.length() - 1;
+                append(escape);
+                start = ix + 1;
+            }
+        }
+        append(string, start, length);
+        append('\"');
+        return written;
+    }
+
+    /**
+     * Makes sure that the buffer has room for the number of characters.
+     */
+    private void reserve(int size) throws IOException {
+        if (count + size > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void append(char c) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = c;
+    }
+
+    private void append(CharSequence chars, int start, int end) throws IOException {
+        while (start < end) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            int next = Math.min(end, start + buffer.length - count);
+            if (chars instanceof String) {
+                ((String) chars).getChars(start, next, buffer, count);
+                count += next - start;
+            } else {
+                for (int ix = start; ix < next; ix++) {
+                    buffer[count++] = chars.charAt(ix);
+                }
+            }
+            start = next;
+        }
+    }
+
+    private void append(String string) throws IOException {
+        int length = string.length();
+        if (count + length > buffer.length) {
+            flushBuffer();
+            if (length > buffer.length) {
+                out.append(string);
+                return;
+            }
+        }
+        string.getChars(0, length, buffer, count);
+        count += length;
+    }
+
+    /**
+     * Writes everything that has been buffered to the output, without flushing the output itself.
+     */
+    void flushBuffer() throws IOException {
+        if (count > 0) {
+            if (out instanceof Writer) {
+                ((Writer) out).write(buffer, 0, count);
+            } else if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(buffer, 0, count);
+            } else {
+                out.append(CharBuffer.wrap(buffer, 0, count));
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes everything that has been buffered to the output and flushes the output itself, when possible.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Writes everything to the output, without flushing or closing the output itself, and returns the buffers to be
+     * reused by the next writer on this thread. This writer can not be used anymore afterwards.
+     */
+    void release() throws IOException {
+        if (buffer != null) {
+            flushBuffer();
+            if (out instanceof UTF8Writer) {
+                ((UTF8Writer) out).release();
+            }
+            BufferRecycler.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Flushes the writer and closes the output, when possible. The buffers are reused by the next writer on this
+     * thread.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer != null) {
+            flush();
+            release();
+        }
+        if (out instanceof Closeable) {
+            ((Closeable) out).close();
+        }
+    }
+}
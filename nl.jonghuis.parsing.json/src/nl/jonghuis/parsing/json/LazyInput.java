@@ -0,0 +1,50 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The complete input of a lazy {@link JSONDecoder}, shared by all the lazy containers that have been created from it.
+ */
+final class LazyInput {
+    /**
+     * Takes the place of a value in a lazy container, until it is parsed.
+     */
+    static final class Deferred {
+        final int offset;
+
+        Deferred(int offset) {
+            this.offset = offset;
+        }
+    }
+
+    final char[] chars;
+    final int limit;
+    final int linesDropped;
+    final long lastNewlineIndex;
+    final JSONKeyCache keyCache;
+
+    LazyInput(char[] chars, int limit, int linesDropped, long lastNewlineIndex, JSONKeyCache keyCache) {
+        this.chars = chars;
+        this.limit = limit;
+        this.linesDropped = linesDropped;
+        this.lastNewlineIndex = lastNewlineIndex;
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * @return The value itself, or the parsed value when it is a {@link Deferred}
+     */
+    Object resolve(Object value) {
+        if (!(value instanceof Deferred)) {
+            return value;
+        }
+
+        try {
+            return new JSONDecoder(this, ((Deferred) value).offset).parseValue();
+        } catch (IOException e) {
+            // Only possible for duplicate keys, the rest has been checked while skipping
+            throw new UncheckedIOException(e);
+        }
+    }
+}
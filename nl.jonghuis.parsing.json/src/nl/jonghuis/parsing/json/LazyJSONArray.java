@@ -0,0 +1,186 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ObjectStreamException;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import nl.jonghuis.parsing.json.LazyInput.Deferred;
+
+/**
+ * A {@link JSONArray} that parses its values when they are first accessed. Getting a single value only parses that
+ * value, anything that exposes all the values (like iterating) parses all of them first.
+ */
+final class LazyJSONArray extends JSONArray {
+    private static final long serialVersionUID = 1L;
+
+    private final transient LazyInput input;
+    // True when none of the values need to be parsed anymore
+    private boolean complete;
+
+    LazyJSONArray(LazyInput input) {
+        this.input = input;
+    }
+
+    void defer(int offset) {
+        super.add(new Deferred(offset));
+    }
+
+    private void resolveAll() {
+        if (!complete) {
+            for (int ix = 0; ix < size(); ix++) {
+                super.set(ix, input.resolve(super.get(ix)));
+            }
+            complete = true;
+        }
+    }
+
+    @Override
+    public Object get(int index) {
+        Object value = super.get(index);
+        if (value instanceof Deferred) {
+            value = input.resolve(value);
+            super.set(index, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        Object old = get(index);
+        super.set(index, element);
+        return old;
+    }
+
+    @Override
+    public Object remove(int index) {
+        Object old = get(index);
+        super.remove(index);
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        resolveAll();
+        return super.remove(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        resolveAll();
+        return super.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        resolveAll();
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        resolveAll();
+        return super.contains(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        resolveAll();
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        resolveAll();
+        return super.toArray(a);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        resolveAll();
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator() {
+        resolveAll();
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator(int index) {
+        resolveAll();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public List<Object> subList(int fromIndex, int toIndex) {
+        resolveAll();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<Object> spliterator() {
+        resolveAll();
+        return super.spliterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Object> action) {
+        resolveAll();
+        super.forEach(action);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Object> filter) {
+        resolveAll();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        resolveAll();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        resolveAll();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Object> operator) {
+        resolveAll();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Object> c) {
+        resolveAll();
+        super.sort(c);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        resolveAll();
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        resolveAll();
+        return super.hashCode();
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        resolveAll();
+        return new JSONArray(this);
+    }
+}
@@ -0,0 +1,162 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ObjectStreamException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import nl.jonghuis.parsing.json.LazyInput.Deferred;
+
+/**
+ * A {@link JSONObject} that parses its values when they are first accessed. Getting a single value only parses that
+ * value, anything that exposes all the values (like iterating over the entries) parses all of them first.
+ */
+final class LazyJSONObject extends JSONObject {
+    private static final long serialVersionUID = 1L;
+
+    private final transient LazyInput input;
+    // The number of values that have not been parsed yet
+    private int deferred;
+
+    LazyJSONObject(LazyInput input) {
+        this.input = input;
+    }
+
+    void defer(String key, int offset) {
+        super.put(key, new Deferred(offset));
+        deferred++;
+    }
+
+    private Object resolve(Object key, Object value) {
+        if (value instanceof Deferred) {
+            value = input.resolve(value);
+            super.put((String) key, value);
+            deferred--;
+        }
+        return value;
+    }
+
+    private void resolveAll() {
+        if (deferred > 0) {
+            for (Map.Entry<String, Object> entry : super.entrySet()) {
+                if (entry.getValue() instanceof Deferred) {
+                    entry.setValue(input.resolve(entry.getValue()));
+                }
+            }
+            deferred = 0;
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        return resolve(key, super.get(key));
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        return containsKey(key) ? get(key) : defaultValue;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object old = get(key);
+        super.put(key, value);
+        return old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object old = get(key);
+        super.remove(key);
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        get(key);
+        return super.remove(key, value);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        get(key);
+        return super.replace(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        get(key);
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        get(key);
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction) {
+        get(key);
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key,
+                                   BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        get(key);
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        get(key);
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key,
+                        Object value,
+                        BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        get(key);
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        resolveAll();
+        return super.containsValue(value);
+    }
+
+    @Override
+    public Collection<Object> values() {
+        resolveAll();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        resolveAll();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        resolveAll();
+        super.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+        resolveAll();
+        super.replaceAll(function);
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        resolveAll();
+        return new JSONObject(this);
+    }
+}
@@ -0,0 +1,144 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads newline delimited JSON (also known as NDJSON or JSON Lines), where each line holds a single value. All the
+ * records are read with one {@link JSONDecoder}, so its buffers are reused instead of splitting the lines first.
+ * Records are counted as values, so values that are spread over multiple lines, or that share a line, are read as
+ * well.
+ *
+ * Errors are reported with the number of the record (see {@link JSONParseException#getRecordNumber()}). After an
+ * error, the rest of its line is skipped, so the next record can still be read. A record that is cut off at the end
+ * of its line does not take the record on the next line with it.
+ *
+ * <pre>
+ * try (NDJSONReader reader = new NDJSONReader(path)) {
+ *     while (reader.hasNext()) {
+ *         Object record = reader.readRecord();
+ *     }
+ * }
+ * </pre>
+ */
+public class NDJSONReader implements Iterator<Object>, Closeable {
+    private final JSONDecoder decoder;
+    private final Closeable input;
+    private long recordNumber = 0;
+
+    /**
+     * Reads the records with the given decoder, so it can be configured first. Closing this reader does nothing in
+     * this case.
+     */
+    public NDJSONReader(JSONDecoder decoder) {
+        this.decoder = decoder;
+        input = null;
+    }
+
+    public NDJSONReader(Reader reader) throws IOException {
+        decoder = new JSONDecoder(reader);
+        input = reader;
+    }
+
+    /**
+     * Creates a reader for UTF-8 encoded records.
+     */
+    public NDJSONReader(InputStream input) throws IOException {
+        decoder = new JSONDecoder(input);
+        this.input = input;
+    }
+
+    /**
+     * Creates a reader for a UTF-8 encoded file, which is mapped into memory.
+     */
+    public NDJSONReader(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            decoder = new JSONDecoder(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        input = channel;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !decoder.isEndOfFile();
+    }
+
+    /**
+     * @return The next record
+     * @throws JSONParseException
+     *             When the record is not valid, after which the next record can still be read
+     * @throws NoSuchElementException
+     *             When there are no more records
+     */
+    public Object readRecord() throws IOException {
+        if (decoder.isEndOfFile()) {
+            throw new NoSuchElementException();
+        }
+
+        recordNumber++;
+        long start = decoder.offset();
+        try {
+            return decoder.parseValue();
+        } catch (JSONParseException e) {
+            decoder.skipLine(start);
+            throw e.inRecord(recordNumber);
+        }
+    }
+
+    /**
+     * The same as {@link #readRecord()}, with any {@link IOException} wrapped in an {@link UncheckedIOException}.
+     */
+    @Override
+    public Object next() {
+        try {
+            return readRecord();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The number of the last record that has been read, starting at 1
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return A sequential stream of the remaining records, that closes this reader when it is closed
+     */
+    public Stream<Object> stream() {
+        Stream<Object> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED),
+                                                     false);
+        return stream.onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package nl.jonghuis.parsing.json;
+
+import java.math.BigInteger;
+
+/**
+ * Writes numbers straight into a character buffer, without creating a {@link String} for each of them. Doubles are
+ * written with the shortest decimal that reads back as the same double, using the Schubfach algorithm by Raffaello
+ * Giulietti ("The Schubfach way to render doubles", 2021). The output has the same form as {@link Double#toString},
+ * so it is plain for magnitudes from 10<sup>-3</sup> up to 10<sup>7</sup> and in computerized scientific notation
+ * otherwise.
+ */
+final class NumberWriter {
+    /**
+     * The maximum number of characters written for a long or a double.
+     */
+    static final int MAX_LENGTH = 32;
+
+    private static final char[] DIGIT_PAIRS = new char[200];
+
+    static {
+        for (int ix = 0; ix < 100; ix++) {
+            DIGIT_PAIRS[ix * 2] = (char) ('0' + (ix / 10));
+            DIGIT_PAIRS[(ix * 2) + 1] = (char) ('0' + (ix % 10));
+        }
+    }
+
+    // The properties of doubles, with q the binary exponent and c the significand
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final long C_TINY = 3;
+    private static final int BQ_MASK = (1 << 11) - 1;
+    private static final long T_MASK = C_MIN - 1;
+    private static final long MASK_63 = Long.MAX_VALUE;
+
+    // The range of decimal exponents k for which the powers of 10 are needed
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    /**
+     * For each k, 10<sup>-k</sup> as the 126 bits g = floor(10<sup>-k</sup> 2<sup>-r</sup>) + 1, where r is chosen
+     * so that 2<sup>125</sup> &lt;= 10<sup>-k</sup> 2<sup>-r</sup> &lt; 2<sup>126</sup>. They are stored as the upper
+     * and lower 63 bits and only calculated when the first double is written.
+     */
+    private static final class Powers {
+        static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+        static {
+            BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+            for (int k = K_MIN; k <= K_MAX; k++) {
+                BigInteger g;
+                if (k <= 0) {
+                    BigInteger power = BigInteger.TEN.pow(-k);
+                    int shift = 126 - power.bitLength();
+                    g = shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+                } else {
+                    BigInteger power = BigInteger.TEN.pow(k);
+                    g = BigInteger.ONE.shiftLeft(125 + power.bitLength()).divide(power);
+                }
+                g = g.add(BigInteger.ONE);
+                G[(k - K_MIN) * 2] = g.shiftRight(63).longValue();
+                G[((k - K_MIN) * 2) + 1] = g.and(mask).longValue();
+            }
+        }
+    }
+
+    /**
+     * Writes the decimal digits of the value into the buffer, which must have room for {@link #MAX_LENGTH} characters.
+     *
+     * @return The position after the last character that has been written
+     */
+    static int write(long value, char[] buffer, int offset) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                "-9223372036854775808".getChars(0, 20, buffer, offset);
+                return offset + 20;
+            }
+            buffer[offset++] = '-';
+            value = -value;
+        }
+
+        int end = offset + digits(value);
+        int ix = end;
+        while (value >= 100) {
+            int pair = (int) (value % 100) * 2;
+            value /= 100;
+            buffer[--ix] = DIGIT_PAIRS[pair + 1];
+            buffer[--ix] = DIGIT_PAIRS[pair];
+        }
+        if (value >= 10) {
+            buffer[--ix] = DIGIT_PAIRS[((int) value * 2) + 1];
+            buffer[--ix] = DIGIT_PAIRS[(int) value * 2];
+        } else {
+            buffer[--ix] = (char) ('0' + value);
+        }
+        return end;
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        for (long limit = 10; (digits < 19) && (value >= limit); limit *= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes the shortest decimal that reads back as the value into the buffer, which must have room for
+     * {@link #MAX_LENGTH} characters. NaN and the infinities are written like {@link Double#toString} does.
+     *
+     * @return The position after the last character that has been written
+     */
+    static int write(double value, char[] buffer, int offset) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            String special = t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity";
+            special.getChars(0, special.length(), buffer, offset);
+            return offset + special.length();
+        }
+
+        if (bits < 0) {
+            buffer[offset++] = '-';
+        }
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            // Integers below 2^53 are written as they are
+            if ((0 < mq) && (mq < P)) {
+                long f = c >> mq;
+                if ((f << mq) == c) {
+                    return format(f, 0, buffer, offset);
+                }
+            }
+            return decimal(-mq, c, 0, buffer, offset);
+        } else if (t != 0) {
+            return t < C_TINY ? decimal(Q_MIN, 10 * t, -1, buffer, offset) : decimal(Q_MIN, t, 0, buffer, offset);
+        } else {
+            return format(0, 0, buffer, offset);
+        }
+    }
+
+    /**
+     * Finds the shortest decimal in the rounding interval of c 2<sup>q</sup>, which is closest to it.
+     */
+    private static int decimal(int q, long c, int dk, char[] buffer, int offset) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        // The interval is asymmetric when c is the smallest significand of a binade
+        if ((c != C_MIN) || (q == Q_MIN)) {
+            cbl = cb - 2;
+            k = (int) ((q * 661_971_961_083L) >> 41);
+        } else {
+            cbl = cb - 1;
+            k = (int) (((q * 661_971_961_083L) + -274_743_187_321L) >> 41);
+        }
+        int h = q + (int) ((-k * 913_124_641_741L) >> 38) + 2;
+
+        long g1 = Powers.G[(k - K_MIN) * 2];
+        long g0 = Powers.G[((k - K_MIN) * 2) + 1];
+
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit less first, s / 10 * 10 is calculated with a multiplication
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = (vbl + out) <= (sp10 << 2);
+            boolean wpin = ((tp10 << 2) + out) <= vbr;
+            if (upin != wpin) {
+                return format(upin ? sp10 : tp10, k, buffer, offset);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = (vbl + out) <= (s << 2);
+        boolean win = ((t << 2) + out) <= vbr;
+        if (uin != win) {
+            return format(uin ? s : t, k + dk, buffer, offset);
+        }
+        long cmp = vb - ((s + t) << 1);
+        return format((cmp < 0) || ((cmp == 0) && ((s & 0x1) == 0)) ? s : t, k + dk, buffer, offset);
+    }
+
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+    }
+
+    /**
+     * @return The upper 64 bits of the 128 bit product, like Math.multiplyHigh in Java 9
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = (x1 * y2) + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + (x2 * y1);
+        long z0 = t >> 32;
+        return (x1 * y1) + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Writes f 10<sup>e</sup> in the same form as {@link Double#toString}.
+     */
+    private static int format(long f, int e, char[] buffer, int offset) {
+        if (f == 0) {
+            buffer[offset] = '0';
+            buffer[offset + 1] = '.';
+            buffer[offset + 2] = '0';
+            return offset + 3;
+        }
+        while ((f % 10) == 0) {
+            f /= 10;
+            e++;
+        }
+
+        // Write the digits at the end of the room for the longest form, so they can be moved into place
+        int length = digits(f);
+        int digits = (offset + 24) - length;
+        write(f, buffer, digits);
+        // The value is 0.digits 10^exponent
+        int exponent = length + e;
+
+        if ((exponent > 0) && (exponent <= 7)) {
+            if (e >= 0) {
+                System.arraycopy(buffer, digits, buffer, offset, length);
+                offset += length;
+                for (int ix = 0; ix < e; ix++) {
+                    buffer[offset++] = '0';
+                }
+                buffer[offset++] = '.';
+                buffer[offset++] = '0';
+            } else {
+                System.arraycopy(buffer, digits, buffer, offset, exponent);
+                buffer[offset + exponent] = '.';
+                System.arraycopy(buffer, digits + exponent, buffer, offset + exponent + 1, length - exponent);
+                offset += length + 1;
+            }
+            return offset;
+        } else if ((exponent <= 0) && (exponent > -3)) {
+            buffer[offset++] = '0';
+            buffer[offset++] = '.';
+            for (int ix = exponent; ix < 0; ix++) {
+                buffer[offset++] = '0';
+            }
+            System.arraycopy(buffer, digits, buffer, offset, length);
+            return offset + length;
+        } else {
+            buffer[offset++] = buffer[digits];
+            buffer[offset++] = '.';
+            if (length == 1) {
+                buffer[offset++] = '0';
+            } else {
+                System.arraycopy(buffer, digits + 1, buffer, offset, length - 1);
+                offset += length - 1;
+            }
+            buffer[offset++] = 'E';
+            return write(exponent - 1, buffer, offset);
+        }
+    }
+
+    private NumberWriter() {
+    }
+}
@@ -0,0 +1,312 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses large inputs on multiple threads, by splitting them into chunks that are parsed by separate decoders. The
+ * values are returned as a parallel {@link Stream}, which keeps them in order, unless it is made
+ * {@link Stream#unordered() unordered} or consumed with {@link Stream#forEach(java.util.function.Consumer)}.
+ *
+ * <ul>
+ * <li>{@link #records(Path)} reads newline delimited JSON, which is split at newlines. Unlike the
+ * {@link NDJSONReader}, each record must be on a single line.</li>
+ * <li>{@link #elements(Path)} reads the elements of a top level array. The boundaries between the elements are found
+ * with a quick scan over the bytes first, that only keeps track of strings and nesting. This scan is also split into
+ * blocks that are scanned in parallel, when the stream is created.</li>
+ * </ul>
+ *
+ * The chunks are parsed in the common {@link java.util.concurrent.ForkJoinPool}, or in the pool that runs the
+ * operation on the stream. A file is mapped into memory once, for all the chunks. Errors are thrown as an
+ * {@link UncheckedIOException}, with the line and record numbers of the complete input. Streams of a file must be
+ * closed, to close the file.
+ *
+ * <pre>
+ * try (Stream&lt;Object&gt; records = new ParallelDecoder().records(path)) {
+ *     long count = records.filter(record -&gt; ...).count();
+ * }
+ * </pre>
+ */
+public class ParallelDecoder {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    private static final int BLOCK_SIZE = 8192;
+    // The most blocks an array is divided into, to find the chunks
+    private static final int MAX_BLOCKS = 1 << 16;
+
+    private JSONKeyCache keyCache;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Makes all the decoders use the same cache for the keys in objects.
+     *
+     * @return This decoder
+     */
+    public ParallelDecoder withKeyCache(JSONKeyCache keyCache) {
+        this.keyCache = keyCache;
+        return this;
+    }
+
+    /**
+     * @param chunkSize
+     *            The minimal number of bytes that is parsed by a single decoder, 1MB by default
+     * @return This decoder
+     */
+    public ParallelDecoder withChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The size of the chunks must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Reads the records of a UTF-8 encoded file with newline delimited JSON, which is mapped into memory.
+     */
+    public Stream<Object> records(Path path) throws IOException {
+        ByteSource source = open(path);
+        try {
+            return records(source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    private static ByteSource open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ByteSource(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the records of newline delimited JSON from the remaining bytes of the buffer, without changing its
+     * position.
+     */
+    public Stream<Object> records(ByteBuffer bytes) throws IOException {
+        return records(new ByteSource(bytes));
+    }
+
+    public Stream<Object> records(byte[] bytes) throws IOException {
+        return records(ByteBuffer.wrap(bytes));
+    }
+
+    private Stream<Object> records(ByteSource source) throws IOException {
+        return stream(new RecordSpliterator(source, 0, source.size(), keyCache, chunkSize), source);
+    }
+
+    /**
+     * Reads the elements of the array in a UTF-8 encoded file, which is mapped into memory.
+     */
+    public Stream<Object> elements(Path path) throws IOException {
+        ByteSource source = open(path);
+        try {
+            return elements(source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the elements of the array in the remaining bytes of the buffer, without changing its position.
+     */
+    public Stream<Object> elements(ByteBuffer bytes) throws IOException {
+        return elements(new ByteSource(bytes));
+    }
+
+    public Stream<Object> elements(byte[] bytes) throws IOException {
+        return elements(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Finds the chunks of elements in two passes over blocks of the array, that both run in parallel. The first pass
+     * finds the effect of each block on the nesting, both for when it starts outside of a string and when it starts
+     * inside one. That is enough to know where each block starts, after which the second pass finds the first comma
+     * between elements in each block, where a new chunk starts. Anything that is not an array is parsed as a whole, to
+     * report the error.
+     */
+    private Stream<Object> elements(ByteSource source) throws IOException {
+        // Only whitespace and a byte order mark can be around the array
+        long size = source.size();
+        long open = 0;
+        if ((size >= 3) && (source.get(0) == (byte) 0xEF) && (source.get(1) == (byte) 0xBB)
+            && (source.get(2) == (byte) 0xBF)) {
+            open = 3;
+        }
+        while ((open < size) && isWhitespace(source.get(open))) {
+            open++;
+        }
+        long close = size - 1;
+        while ((close > open) && isWhitespace(source.get(close))) {
+            close--;
+        }
+
+        Block[] blocks = null;
+        if ((close > open) && (source.get(open) == '[') && (source.get(close) == ']')) {
+            long start = open + 1;
+            long end = close;
+            long blockSize = Math.max(chunkSize, ((end - start) + MAX_BLOCKS - 1) / MAX_BLOCKS);
+            int count = (int) Math.max(1, ((end - start) + blockSize - 1) / blockSize);
+            blocks = IntStream.range(0, count)
+                              .parallel()
+                              .mapToObj(ix -> new Block(source, start, end, ix, blockSize))
+                              .toArray(Block[]::new);
+        }
+        if ((blocks == null) || !Block.link(blocks)) {
+            JSONArray array = new JSONDecoder(source.reader(0, size)).withKeyCache(keyCache).parseArray();
+            return stream(array.spliterator(), source);
+        }
+
+        long[] commas = Arrays.stream(blocks).parallel().mapToLong(block -> block.findComma(source)).toArray();
+        long[] starts = new long[blocks.length + 1];
+        int chunks = 0;
+        starts[chunks++] = open + 1;
+        for (int ix = 1; ix < commas.length; ix++) {
+            if (commas[ix] >= 0) {
+                starts[chunks++] = commas[ix] + 1;
+            }
+        }
+        starts[chunks] = close + 1;
+        starts = Arrays.copyOf(starts, chunks + 1);
+        return stream(new ElementSpliterator(source, starts, 0, chunks, keyCache), source);
+    }
+
+    private static boolean isWhitespace(byte value) {
+        return (value == ' ') || (value == '\t') || (value == '\n') || (value == '\r');
+    }
+
+    /**
+     * A part of the contents of an array, with its effect on the nesting. It never starts right after a backslash, so
+     * it starts either outside or inside of a string, but not in the middle of an escape.
+     */
+    private static final class Block {
+        final long start, end;
+        // The effect of the block, for when it starts outside of a string and for when it starts inside of one
+        final Nesting outside = new Nesting(Nesting.OUTSIDE);
+        final Nesting inside = new Nesting(Nesting.INSIDE);
+
+        // Where the block starts, known after linking the blocks
+        private int startState;
+        private long startDepth;
+
+        Block(ByteSource source, long contentStart, long contentEnd, int index, long blockSize) {
+            start = boundary(source, contentStart + (index * blockSize), contentEnd);
+            end = boundary(source, contentStart + ((index + 1) * blockSize), contentEnd);
+            byte[] bytes = new byte[BLOCK_SIZE];
+            for (long position = start; position < end; position += BLOCK_SIZE) {
+                int length = (int) Math.min(source.read(position, bytes), end - position);
+                for (int ix = 0; ix < length; ix++) {
+                    outside.next(bytes[ix]);
+                    inside.next(bytes[ix]);
+                }
+            }
+        }
+
+        private static long boundary(ByteSource source, long index, long contentEnd) {
+            if (index >= contentEnd) {
+                return contentEnd;
+            }
+            while ((index < contentEnd) && (source.get(index - 1) == '\\')) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * Works out where each block starts, from the start of the array onwards.
+         *
+         * @return False when this is not a valid array, in which case the nesting does not add up
+         */
+        static boolean link(Block[] blocks) {
+            int state = Nesting.OUTSIDE;
+            long depth = 1;
+            for (Block block : blocks) {
+                Nesting nesting = state == Nesting.OUTSIDE ? block.outside : block.inside;
+                if ((state == Nesting.ESCAPED) || (depth + nesting.minimum < 1)) {
+                    return false;
+                }
+                block.startState = state;
+                block.startDepth = depth;
+                depth += nesting.depth;
+                state = nesting.state;
+            }
+            return (state == Nesting.OUTSIDE) && (depth == 1);
+        }
+
+        /**
+         * @return The index of the first comma between the elements of the array in this block, or -1
+         */
+        long findComma(ByteSource source) {
+            Nesting nesting = new Nesting(startState);
+            long commaDepth = 1 - startDepth;
+            byte[] bytes = new byte[BLOCK_SIZE];
+            for (long position = start; position < end; position += BLOCK_SIZE) {
+                int length = (int) Math.min(source.read(position, bytes), end - position);
+                for (int ix = 0; ix < length; ix++) {
+                    nesting.next(bytes[ix]);
+                    if ((bytes[ix] == ',') && (nesting.state == Nesting.OUTSIDE) && (nesting.depth == commaDepth)) {
+                        return position + ix;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Keeps track of strings and nesting over bytes of JSON, relative to where it started.
+     */
+    private static final class Nesting {
+        static final int OUTSIDE = 0, INSIDE = 1, ESCAPED = 2;
+
+        int state;
+        long depth;
+        // The lowest depth after any of the bytes
+        long minimum;
+
+        Nesting(int state) {
+            this.state = state;
+        }
+
+        void next(byte value) {
+            if (state == INSIDE) {
+                if (value == '\\') {
+                    state = ESCAPED;
+                } else if (value == '"') {
+                    state = OUTSIDE;
+                }
+            } else if (state == ESCAPED) {
+                state = INSIDE;
+            } else if (value == '"') {
+                state = INSIDE;
+            } else if ((value == '[') || (value == '{')) {
+                depth++;
+            } else if ((value == ']') || (value == '}')) {
+                minimum = Math.min(minimum, --depth);
+            }
+        }
+    }
+
+    private static Stream<Object> stream(Spliterator<Object> spliterator, ByteSource source) {
+        return StreamSupport.stream(spliterator, true).onClose(() -> {
+            try {
+                source.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
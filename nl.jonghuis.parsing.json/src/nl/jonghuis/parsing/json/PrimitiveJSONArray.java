@@ -0,0 +1,568 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link JSONArray} of numbers that keeps them in a primitive array, instead of boxing each of them (see
+ * {@link JSONDecoder#primitiveArrays()}). Reading the values boxes them when needed, except for the primitive getters.
+ * The first change copies the values into the list itself, after which it behaves like any other {@link JSONArray}.
+ */
+abstract class PrimitiveJSONArray extends JSONArray {
+    private static final long serialVersionUID = 1L;
+
+    // The number of values in the primitive array, or -1 when they have been copied into the list
+    private int length;
+
+    PrimitiveJSONArray(int length) {
+        this.length = length;
+    }
+
+    /**
+     * @return The value, boxed in the same way as the {@link JSONDecoder} does
+     */
+    abstract Number number(int index);
+
+    abstract int intValue(int index);
+
+    abstract long longValue(int index);
+
+    abstract double doubleValue(int index);
+
+    abstract void writeValues(JSONWriter writer) throws IOException;
+
+    /**
+     * Drops the primitive array, after the values have been copied into the list.
+     */
+    abstract void release();
+
+    /**
+     * Writes the values without boxing them.
+     *
+     * @return False when the values are not in the primitive array anymore, so nothing has been written
+     */
+    boolean write(JSONWriter writer) throws IOException {
+        if (length < 0) {
+            return false;
+        }
+        writer.beginArray();
+        writeValues(writer);
+        writer.endArray();
+        return true;
+    }
+
+    private void checkIndex(int index) {
+        if ((index < 0) || (index >= length)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+        }
+    }
+
+    /**
+     * @return A view of the values, that changes this array through its public methods
+     */
+    private List<Object> values() {
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(int index) {
+                return PrimitiveJSONArray.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return PrimitiveJSONArray.this.size();
+            }
+
+            @Override
+            public Object set(int index, Object element) {
+                return PrimitiveJSONArray.this.set(index, element);
+            }
+
+            @Override
+            public void add(int index, Object element) {
+                PrimitiveJSONArray.this.add(index, element);
+            }
+
+            @Override
+            public Object remove(int index) {
+                return PrimitiveJSONArray.this.remove(index);
+            }
+        };
+    }
+
+    private void inflate() {
+        if (length >= 0) {
+            Object[] values = values().toArray();
+            length = -1;
+            release();
+            super.addAll(Arrays.asList(values));
+        }
+    }
+
+    @Override
+    public int size() {
+        return length < 0 ? super.size() : length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Object get(int index) {
+        if (length < 0) {
+            return super.get(index);
+        }
+        checkIndex(index);
+        return number(index);
+    }
+
+    @Override
+    public int getInt(int index) throws UnexpectedTypeException {
+        if (length < 0) {
+            return super.getInt(index);
+        }
+        checkIndex(index);
+        return intValue(index);
+    }
+
+    @Override
+    public long getLong(int index) throws UnexpectedTypeException {
+        if (length < 0) {
+            return super.getLong(index);
+        }
+        checkIndex(index);
+        return longValue(index);
+    }
+
+    @Override
+    public double getDouble(int index) throws UnexpectedTypeException {
+        if (length < 0) {
+            return super.getDouble(index);
+        }
+        checkIndex(index);
+        return doubleValue(index);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return length < 0 ? super.contains(o) : values().contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return length < 0 ? super.indexOf(o) : values().indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return length < 0 ? super.lastIndexOf(o) : values().lastIndexOf(o);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return length < 0 ? super.toArray() : values().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return length < 0 ? super.toArray(a) : values().toArray(a);
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return length < 0 ? super.iterator() : values().iterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator() {
+        return length < 0 ? super.listIterator() : values().listIterator();
+    }
+
+    @Override
+    public ListIterator<Object> listIterator(int index) {
+        return length < 0 ? super.listIterator(index) : values().listIterator(index);
+    }
+
+    @Override
+    public List<Object> subList(int fromIndex, int toIndex) {
+        return length < 0 ? super.subList(fromIndex, toIndex) : values().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Spliterator<Object> spliterator() {
+        return length < 0 ? super.spliterator() : values().spliterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Object> action) {
+        if (length < 0) {
+            super.forEach(action);
+        } else {
+            values().forEach(action);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return length < 0 ? super.equals(o) : values().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return length < 0 ? super.hashCode() : values().hashCode();
+    }
+
+    @Override
+    public boolean add(Object e) {
+        inflate();
+        return super.add(e);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+        inflate();
+        super.add(index, element);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Object> c) {
+        inflate();
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Object> c) {
+        inflate();
+        return super.addAll(index, c);
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+        inflate();
+        return super.set(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+        inflate();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        inflate();
+        return super.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        inflate();
+        super.clear();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        inflate();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        inflate();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Object> filter) {
+        inflate();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<Object> operator) {
+        inflate();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Object> c) {
+        inflate();
+        super.sort(c);
+    }
+
+    @Override
+    public Object clone() {
+        inflate();
+        return super.clone();
+    }
+
+    Object writeReplace() throws ObjectStreamException {
+        return new JSONArray(this);
+    }
+
+    static final class Ints extends PrimitiveJSONArray {
+        private static final long serialVersionUID = 1L;
+
+        private int[] values;
+
+        Ints(int[] values) {
+            super(values.length);
+            this.values = values;
+        }
+
+        @Override
+        Number number(int index) {
+            return values[index];
+        }
+
+        @Override
+        int intValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        long longValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        double doubleValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        void writeValues(JSONWriter writer) throws IOException {
+            for (int value : values) {
+                writer.value(value);
+            }
+        }
+
+        @Override
+        void release() {
+            values = null;
+        }
+    }
+
+    static final class Longs extends PrimitiveJSONArray {
+        private static final long serialVersionUID = 1L;
+
+        private long[] values;
+
+        Longs(long[] values) {
+            super(values.length);
+            this.values = values;
+        }
+
+        @Override
+        Number number(int index) {
+            return box(values[index]);
+        }
+
+        @Override
+        int intValue(int index) {
+            return (int) values[index];
+        }
+
+        @Override
+        long longValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        double doubleValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        void writeValues(JSONWriter writer) throws IOException {
+            for (long value : values) {
+                writer.value(value);
+            }
+        }
+
+        @Override
+        void release() {
+            values = null;
+        }
+    }
+
+    static final class Doubles extends PrimitiveJSONArray {
+        private static final long serialVersionUID = 1L;
+
+        private double[] values;
+        // For each of the values, whether it has been parsed as an integer
+        private long[] integers;
+
+        Doubles(double[] values, long[] integers) {
+            super(values.length);
+            this.values = values;
+            this.integers = integers;
+        }
+
+        private boolean isInteger(int index) {
+            return (integers[index >> 6] & (1L << index)) != 0;
+        }
+
+        @Override
+        Number number(int index) {
+            return isInteger(index) ? box((long) values[index]) : (Number) values[index];
+        }
+
+        @Override
+        int intValue(int index) {
+            return isInteger(index) ? (int) (long) values[index] : (int) values[index];
+        }
+
+        @Override
+        long longValue(int index) {
+            return (long) values[index];
+        }
+
+        @Override
+        double doubleValue(int index) {
+            return values[index];
+        }
+
+        @Override
+        void writeValues(JSONWriter writer) throws IOException {
+            for (int ix = 0; ix < values.length; ix++) {
+                if (isInteger(ix)) {
+                    writer.value((long) values[ix]);
+                } else {
+                    writer.value(values[ix]);
+                }
+            }
+        }
+
+        @Override
+        void release() {
+            values = null;
+            integers = null;
+        }
+    }
+
+    /**
+     * Boxes an integer like the {@link JSONDecoder} does, as an Integer when it has at most 9 digits.
+     */
+    static Number box(long value) {
+        if ((value > -1_000_000_000L) && (value < 1_000_000_000L)) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    /**
+     * Collects the numbers of an array while it is parsed, in the smallest kind of primitive array that fits all of
+     * them. Integers are only stored with decimal numbers while they can be represented exactly as doubles.
+     */
+    static final class Builder {
+        private static final long MAX_EXACT = 1L << 53;
+
+        private long[] longs = new long[16];
+        private boolean wide;
+        private double[] doubles;
+        // For each of the doubles, whether it has been parsed as an integer
+        private long[] integers;
+        private int size;
+
+        /**
+         * @return False when the number does not fit, in which case it has not been added
+         */
+        boolean add(int kind, long longValue, double doubleValue) {
+            switch (kind) {
+            case JSONDecoder.INT_NUMBER:
+            case JSONDecoder.LONG_NUMBER:
+                if (doubles == null) {
+                    if (size == longs.length) {
+                        longs = Arrays.copyOf(longs, size * 2);
+                    }
+                    longs[size++] = longValue;
+                    wide |= kind == JSONDecoder.LONG_NUMBER;
+                    return true;
+                } else if ((longValue >= -MAX_EXACT) && (longValue <= MAX_EXACT)) {
+                    addDouble(longValue, true);
+                    return true;
+                }
+                return false;
+            case JSONDecoder.DOUBLE_NUMBER:
+                if ((doubles == null) && !toDoubles()) {
+                    return false;
+                }
+                addDouble(doubleValue, false);
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        private boolean toDoubles() {
+            for (int ix = 0; ix < size; ix++) {
+                if ((longs[ix] < -MAX_EXACT) || (longs[ix] > MAX_EXACT)) {
+                    return false;
+                }
+            }
+            doubles = new double[longs.length];
+            integers = new long[(longs.length + 63) >> 6];
+            for (int ix = 0; ix < size; ix++) {
+                doubles[ix] = longs[ix];
+                integers[ix >> 6] |= 1L << ix;
+            }
+            longs = null;
+            return true;
+        }
+
+        private void addDouble(double value, boolean integer) {
+            if (size == doubles.length) {
+                doubles = Arrays.copyOf(doubles, size * 2);
+                integers = Arrays.copyOf(integers, (doubles.length + 63) >> 6);
+            }
+            if (integer) {
+                integers[size >> 6] |= 1L << size;
+            }
+            doubles[size++] = value;
+        }
+
+        JSONArray build() {
+            if (doubles != null) {
+                return new Doubles(Arrays.copyOf(doubles, size), Arrays.copyOf(integers, (size + 63) >> 6));
+            } else if (wide) {
+                return new Longs(Arrays.copyOf(longs, size));
+            }
+            int[] ints = new int[size];
+            for (int ix = 0; ix < size; ix++) {
+                ints[ix] = (int) longs[ix];
+            }
+            return new Ints(ints);
+        }
+
+        /**
+         * @return A normal array with the numbers that have been added, boxed as they were parsed
+         */
+        JSONArray toJSONArray() {
+            JSONArray array = new JSONArray();
+            array.ensureCapacity(size + 1);
+            for (int ix = 0; ix < size; ix++) {
+                if (doubles == null) {
+                    array.add(box(longs[ix]));
+                } else if ((integers[ix >> 6] & (1L << ix)) != 0) {
+                    array.add(box((long) doubles[ix]));
+                } else {
+                    array.add(doubles[ix]);
+                }
+            }
+            return array;
+        }
+    }
+}
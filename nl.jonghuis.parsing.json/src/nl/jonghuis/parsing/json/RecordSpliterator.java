@@ -0,0 +1,82 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Parses the records of newline delimited JSON from a part of the input. A part is split in two at the first newline
+ * after its middle, which is always between records, since a newline can not be part of a value.
+ */
+final class RecordSpliterator implements Spliterator<Object> {
+    private final ByteSource source;
+    private final JSONKeyCache keyCache;
+    private final int chunkSize;
+    private long start;
+    private final long end;
+
+    // Once parsing has started, the part can no longer be split
+    private JSONDecoder decoder;
+    private long records;
+
+    RecordSpliterator(ByteSource source, long start, long end, JSONKeyCache keyCache, int chunkSize) {
+        this.source = source;
+        this.keyCache = keyCache;
+        this.chunkSize = chunkSize;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        Object record;
+        try {
+            if (decoder == null) {
+                decoder = new JSONDecoder(source.reader(start, end)).withKeyCache(keyCache);
+            }
+            if (decoder.isEndOfFile()) {
+                return false;
+            }
+
+            records++;
+            try {
+                record = decoder.parseValue();
+            } catch (JSONParseException e) {
+                throw source.relocate(e, start, source.countValues(0, start, false) + records);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        action.accept(record);
+        return true;
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+        if ((decoder != null) || (end - start < 2L * chunkSize)) {
+            return null;
+        }
+
+        long newline = source.indexOf((byte) '\n', start + ((end - start) / 2), end);
+        if ((newline < 0) || (newline + 1 >= end)) {
+            return null;
+        }
+        RecordSpliterator prefix = new RecordSpliterator(source, start, newline + 1, keyCache, chunkSize);
+        start = newline + 1;
+        return prefix;
+    }
+
+    /**
+     * @return The number of bytes, since the number of records is not known
+     */
+    @Override
+    public long estimateSize() {
+        return end - start;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+}
@@ -0,0 +1,407 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes values straight into objects of a given type (see {@link JSONDecoder#parseValue(Type)}), using the
+ * {@link ClassBinding} of each class. Numbers are scanned without boxing them first, and arrays of ints, longs and
+ * doubles are filled without boxing at all. Just like the {@link JSONReader}, duplicate keys are not detected; the
+ * last value is the one that is kept.
+ */
+final class TypeReader {
+    private TypeReader() {
+    }
+
+    static Object read(JSONDecoder decoder, Type type) throws IOException {
+        decoder.checkEndOfFile();
+        Class<?> raw = rawType(type);
+        char c = decoder.current();
+
+        if (c == 'n') {
+            if (raw.isPrimitive()) {
+                throw expected(decoder, raw.getName());
+            }
+            return decoder.parseNull();
+        } else if (raw == Object.class) {
+            return decoder.parseValue();
+        } else if (raw == JSONObject.class) {
+            return decoder.parseObject();
+        } else if (raw == JSONArray.class) {
+            return decoder.parseArray();
+        } else if (raw == String.class) {
+            if (c != '"') {
+                throw expected(decoder, "a string");
+            }
+            return decoder.parseString();
+        } else if ((raw == Boolean.TYPE) || (raw == Boolean.class)) {
+            if (c == 't') {
+                return decoder.parseTrue();
+            } else if (c == 'f') {
+                return decoder.parseFalse();
+            }
+            throw expected(decoder, "a boolean");
+        } else if ((raw == Character.TYPE) || (raw == Character.class)) {
+            String string = (String) read(decoder, String.class);
+            if (string.length() != 1) {
+                throw decoder.error("Expected a single character, but got \"" + string + "\"");
+            }
+            return string.charAt(0);
+        } else if (raw.isPrimitive() || Number.class.isAssignableFrom(raw)) {
+            return readNumber(decoder, raw);
+        } else if (raw.isEnum()) {
+            String name = (String) read(decoder, String.class);
+            for (Object constant : raw.getEnumConstants()) {
+                if (((Enum<?>) constant).name().equals(name)) {
+                    return constant;
+                }
+            }
+            throw decoder.error("Unknown constant \"" + name + "\" of " + raw.getName());
+        } else if (raw.isArray()) {
+            Type component = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType()
+                                                              : raw.getComponentType();
+            return readArray(decoder, raw.getComponentType(), component);
+        } else if (Collection.class.isAssignableFrom(raw) || (raw == Iterable.class)) {
+            return readCollection(decoder, raw, typeArgument(type, 0));
+        } else if (Map.class.isAssignableFrom(raw)) {
+            Class<?> key = rawType(typeArgument(type, 0));
+            if ((key != String.class) && (key != Object.class)) {
+                throw decoder.error("Can not decode the keys of an object into a " + key.getName());
+            }
+            return readMap(decoder, raw, typeArgument(type, 1));
+        } else {
+            return readObject(decoder, raw);
+        }
+    }
+
+    private static Object readNumber(JSONDecoder decoder, Class<?> raw) throws IOException {
+        char c = decoder.current();
+        if ((c != '-') && ((c < '0') || (c > '9'))) {
+            throw expected(decoder, "a number");
+        }
+        if ((raw == Number.class) || (raw == BigInteger.class) || (raw == BigDecimal.class)) {
+            Number number = decoder.parseNumber();
+            if (raw == BigInteger.class) {
+                if (number instanceof BigInteger) {
+                    return number;
+                } else if (number instanceof BigDecimal) {
+                    return ((BigDecimal) number).toBigInteger();
+                } else if (number instanceof Double) {
+                    return new BigDecimal(number.toString()).toBigInteger();
+                }
+                return BigInteger.valueOf(number.longValue());
+            } else if (raw == BigDecimal.class) {
+                return number instanceof BigDecimal ? number : new BigDecimal(number.toString());
+            }
+            return number;
+        }
+
+        // The same conversions as Number.intValue() and the like
+        int kind = decoder.scanNumber();
+        if ((raw == Double.TYPE) || (raw == Double.class)) {
+            return doubleValue(decoder, kind);
+        } else if ((raw == Float.TYPE) || (raw == Float.class)) {
+            return (float) doubleValue(decoder, kind);
+        }
+
+        if ((raw == Integer.TYPE) || (raw == Integer.class)) {
+            return intValue(decoder, kind);
+        } else if ((raw == Long.TYPE) || (raw == Long.class)) {
+            return longValue(decoder, kind);
+        } else if ((raw == Short.TYPE) || (raw == Short.class)) {
+            return (short) intValue(decoder, kind);
+        } else if ((raw == Byte.TYPE) || (raw == Byte.class)) {
+            return (byte) intValue(decoder, kind);
+        }
+        throw decoder.error("Can not decode a number into a " + raw.getName());
+    }
+
+    static int intValue(JSONDecoder decoder, int kind) {
+        switch (kind) {
+        case JSONDecoder.INT_NUMBER:
+        case JSONDecoder.LONG_NUMBER:
+            return (int) decoder.longValue;
+        case JSONDecoder.DOUBLE_NUMBER:
+            // Saturates, where a cast from the long would wrap around
+            return (int) decoder.doubleValue;
+        default:
+            return decoder.bigValue.intValue();
+        }
+    }
+
+    static long longValue(JSONDecoder decoder, int kind) {
+        switch (kind) {
+        case JSONDecoder.INT_NUMBER:
+        case JSONDecoder.LONG_NUMBER:
+            return decoder.longValue;
+        case JSONDecoder.DOUBLE_NUMBER:
+            return (long) decoder.doubleValue;
+        default:
+            return decoder.bigValue.longValue();
+        }
+    }
+
+    static double doubleValue(JSONDecoder decoder, int kind) {
+        switch (kind) {
+        case JSONDecoder.INT_NUMBER:
+        case JSONDecoder.LONG_NUMBER:
+            return decoder.longValue;
+        case JSONDecoder.DOUBLE_NUMBER:
+            return decoder.doubleValue;
+        default:
+            return decoder.bigValue.doubleValue();
+        }
+    }
+
+    private static Object readArray(JSONDecoder decoder, Class<?> raw, Type component) throws IOException {
+        decoder.consume('[', "start of array");
+        decoder.skipWhitespace();
+
+        int size = 0;
+        if (raw == Integer.TYPE) {
+            int[] values = new int[8];
+            while (nextElement(decoder, size)) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = intValue(decoder, scanNumber(decoder));
+            }
+            return Arrays.copyOf(values, size);
+        } else if (raw == Long.TYPE) {
+            long[] values = new long[8];
+            while (nextElement(decoder, size)) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = longValue(decoder, scanNumber(decoder));
+            }
+            return Arrays.copyOf(values, size);
+        } else if (raw == Double.TYPE) {
+            double[] values = new double[8];
+            while (nextElement(decoder, size)) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = doubleValue(decoder, scanNumber(decoder));
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        List<Object> values = new ArrayList<>();
+        while (nextElement(decoder, values.size())) {
+            values.add(read(decoder, component));
+        }
+        Object array = Array.newInstance(raw, values.size());
+        for (int ix = 0; ix < values.size(); ix++) {
+            Array.set(array, ix, values.get(ix));
+        }
+        return array;
+    }
+
+    static int scanNumber(JSONDecoder decoder) throws IOException {
+        decoder.checkEndOfFile();
+        char c = decoder.current();
+        if ((c != '-') && ((c < '0') || (c > '9'))) {
+            throw expected(decoder, "a number");
+        }
+        return decoder.scanNumber();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readCollection(JSONDecoder decoder, Class<?> raw, Type element) throws IOException {
+        Collection<Object> collection;
+        if (raw.isAssignableFrom(ArrayList.class)) {
+            collection = new ArrayList<>();
+        } else if (raw.isAssignableFrom(LinkedHashSet.class)) {
+            collection = new LinkedHashSet<>();
+        } else {
+            collection = (Collection<Object>) newInstance(decoder, ClassBinding.of(raw));
+        }
+
+        decoder.consume('[', "start of array");
+        decoder.skipWhitespace();
+        while (nextElement(decoder, collection.size())) {
+            collection.add(read(decoder, element));
+        }
+        return collection;
+    }
+
+    /**
+     * Moves to the next value in an array, after the opening bracket or the previous value.
+     *
+     * @return False when the end of the array has been reached
+     */
+    private static boolean nextElement(JSONDecoder decoder, int count) throws IOException {
+        if (decoder.current() == ']') {
+            decoder.consume(']', "end of array");
+            decoder.skipWhitespace();
+            return false;
+        } else if (count > 0) {
+            decoder.consume(',', "a comma");
+            decoder.skipWhitespace();
+        }
+        decoder.checkEndOfFile();
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readMap(JSONDecoder decoder, Class<?> raw, Type value) throws IOException {
+        Map<String, Object> map;
+        if (raw.isAssignableFrom(LinkedHashMap.class)) {
+            map = new LinkedHashMap<>();
+        } else {
+            map = (Map<String, Object>) newInstance(decoder, ClassBinding.of(raw));
+        }
+
+        decoder.consume('{', "start of object");
+        decoder.skipWhitespace();
+        boolean first = true;
+        while (nextKey(decoder, first)) {
+            first = false;
+            String name = decoder.parseName();
+            decoder.consume(':', "colon");
+            decoder.skipWhitespace();
+            map.put(name, read(decoder, value));
+        }
+        return map;
+    }
+
+    /**
+     * Moves to the next key in an object, after the opening brace or the previous value.
+     *
+     * @return False when the end of the object has been reached
+     */
+    private static boolean nextKey(JSONDecoder decoder, boolean first) throws IOException {
+        if (decoder.current() == '}') {
+            decoder.consume('}', "end of object");
+            decoder.skipWhitespace();
+            return false;
+        } else if (!first) {
+            decoder.consume(',', "a comma");
+            decoder.skipWhitespace();
+        }
+        return true;
+    }
+
+    private static Object readObject(JSONDecoder decoder, Class<?> type) throws IOException {
+        JSONCodec<Object> codec = GeneratedCodecs.of(type);
+        if (codec != null) {
+            try {
+                return codec.decode(decoder);
+            } catch (UnexpectedTypeException e) {
+                throw failed(decoder, type, e);
+            }
+        }
+
+        ClassBinding binding = ClassBinding.of(type);
+        if (binding.hasCreator()) {
+            JSONObject object = decoder.parseObject();
+            try {
+                return binding.create(object);
+            } catch (UnexpectedTypeException e) {
+                throw failed(decoder, binding.type, e);
+            }
+        }
+
+        Object[] arguments = binding.newArguments();
+        Object instance = arguments == null ? newInstance(decoder, binding) : null;
+
+        decoder.consume('{', "start of object");
+        decoder.skipWhitespace();
+        boolean first = true;
+        while (nextKey(decoder, first)) {
+            first = false;
+            ClassBinding.Target target = binding.target(decoder.parseName(binding.names));
+            decoder.consume(':', "colon");
+            decoder.skipWhitespace();
+
+            if (target == null) {
+                decoder.skipValue();
+            } else if (arguments != null) {
+                arguments[target.index] = read(decoder, target.genericType);
+            } else {
+                Object value = read(decoder, target.genericType);
+                try {
+                    target.setter.accept(instance, value);
+                } catch (Exception e) {
+                    throw failed(decoder, binding.type, e);
+                }
+            }
+        }
+
+        if (arguments != null) {
+            try {
+                return binding.construct(arguments);
+            } catch (Throwable e) {
+                throw failed(decoder, binding.type, e);
+            }
+        }
+        return instance;
+    }
+
+    private static Object newInstance(JSONDecoder decoder, ClassBinding binding) throws JSONParseException {
+        Object instance;
+        try {
+            instance = binding.newInstance();
+        } catch (Exception e) {
+            throw failed(decoder, binding.type, e);
+        }
+        if (instance == null) {
+            throw decoder.error("Could not find a way to create a " + binding.type.getName());
+        }
+        return instance;
+    }
+
+    private static JSONParseException failed(JSONDecoder decoder, Class<?> type, Throwable cause) {
+        JSONParseException error = decoder.error("Could not create a " + type.getName() + ": " + cause);
+        error.initCause(cause);
+        return error;
+    }
+
+    private static JSONParseException expected(JSONDecoder decoder, String description) {
+        return decoder.error("Unexpected character '" + decoder.current() + "', expected " + description);
+    }
+
+    static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return rawType(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return rawType(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return rawType(((TypeVariable<?>) type).getBounds()[0]);
+        } else {
+            return Object.class;
+        }
+    }
+
+    /**
+     * @return The type argument at the index, or Object when the type has none
+     */
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+}
@@ -0,0 +1,266 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link Reader} that decodes UTF-8 straight from bytes. It is only ever read in blocks by the
+ * {@link JSONDecoder}, so it does not synchronize and runs of ASCII characters (everything in JSON, except for the
+ * contents of strings) are copied without any decoding. Malformed input is replaced by U+FFFD, just like the
+ * {@link java.io.InputStreamReader} does.
+ */
+final class UTF8Reader extends Reader {
+    private static final int BUFFER_SIZE = 8192;
+    private static final char REPLACEMENT = '\uFFFD';
+
+    // Only one of these is used to refill the bytes, when both are null all the bytes are available
+    private final InputStream input;
+    private ByteBuffer source;
+
+    // When reading from a file, the source is the part of its mapping that is being read
+    private final ByteSource file;
+    private final long end;
+    private long mapped;
+
+    private byte[] bytes;
+    private int position, limit;
+    private boolean endOfInput;
+
+    // The second half of a surrogate pair, that did not fit in the last read, or 0
+    private char pending;
+
+    UTF8Reader(byte[] bytes, int offset, int length) {
+        input = null;
+        source = null;
+        file = null;
+        end = 0;
+        this.bytes = bytes;
+        position = offset;
+        limit = offset + length;
+        endOfInput = true;
+        skipByteOrderMark();
+    }
+
+    UTF8Reader(ByteBuffer buffer) {
+        input = null;
+        file = null;
+        end = 0;
+        if (buffer.hasArray()) {
+            source = null;
+            bytes = buffer.array();
+            position = buffer.arrayOffset() + buffer.position();
+            limit = buffer.arrayOffset() + buffer.limit();
+            endOfInput = true;
+            skipByteOrderMark();
+        } else {
+            // Direct buffers are copied into the byte array in blocks, which stay in the cache
+            source = buffer.duplicate();
+            bytes = new byte[BUFFER_SIZE];
+            position = 0;
+            limit = 0;
+            endOfInput = false;
+        }
+    }
+
+    UTF8Reader(InputStream input) {
+        this.input = input;
+        source = null;
+        file = null;
+        end = 0;
+        bytes = new byte[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        endOfInput = false;
+    }
+
+    UTF8Reader(FileChannel channel) throws IOException {
+        this(new ByteSource(channel), 0, channel.size());
+    }
+
+    UTF8Reader(FileChannel channel, int regionSize) throws IOException {
+        this(new ByteSource(channel, regionSize), 0, channel.size());
+    }
+
+    /**
+     * Reads the bytes of the file from the start up to the end, which must both be at the start of a character.
+     */
+    UTF8Reader(ByteSource file, long start, long end) {
+        input = null;
+        source = ByteBuffer.allocate(0);
+        this.file = file;
+        this.end = end;
+        mapped = start;
+        bytes = new byte[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        endOfInput = false;
+    }
+
+    private void skipByteOrderMark() {
+        if ((limit - position >= 3)
+            && (bytes[position] == (byte) 0xEF)
+            && (bytes[position + 1] == (byte) 0xBB)
+            && (bytes[position + 2] == (byte) 0xBF)) {
+            position += 3;
+        }
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        int ix = offset;
+        int end = offset + length;
+        if (pending != 0) {
+            chars[ix++] = pending;
+            pending = 0;
+        }
+
+        while (ix < end) {
+            if (position >= limit) {
+                // Only block for more input when nothing has been read yet
+                if ((ix > offset) || !fill()) {
+                    break;
+                }
+            }
+
+            // Fast path for the ASCII characters
+            int stop = Math.min(limit, position + (end - ix));
+            while ((position < stop) && (bytes[position] >= 0)) {
+                chars[ix++] = (char) bytes[position++];
+            }
+
+            if ((ix < end) && (position < limit) && (bytes[position] < 0)) {
+                if ((position + sequenceLength(bytes[position]) > limit) && !endOfInput) {
+                    // The sequence continues after the end of the bytes that are available
+                    if (ix > offset) {
+                        break;
+                    }
+                    fill();
+                    continue;
+                }
+                ix = decode(chars, ix, end);
+            }
+        }
+
+        return (ix == offset) ? -1 : ix - offset;
+    }
+
+    private static int sequenceLength(byte lead) {
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        } else if ((lead & 0xF0) == 0xE0) {
+            return 3;
+        } else if ((lead & 0xF8) == 0xF0) {
+            return 4;
+        } else {
+            return 1;
+        }
+    }
+
+    private int decode(char[] chars, int ix, int end) {
+        int needed = sequenceLength(bytes[position]) - 1;
+        int codePoint, minimum;
+        switch (needed) {
+        case 1:
+            codePoint = bytes[position] & 0x1F;
+            minimum = 0x80;
+            break;
+        case 2:
+            codePoint = bytes[position] & 0x0F;
+            minimum = 0x800;
+            break;
+        case 3:
+            codePoint = bytes[position] & 0x07;
+            minimum = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+            break;
+        default:
+            // A continuation byte without a lead, or an invalid lead byte
+            position++;
+            chars[ix++] = REPLACEMENT;
+            return ix;
+        }
+
+        int next = position + 1;
+        for (int count = 0; count < needed; count++, next++) {
+            if ((next >= limit) || ((bytes[next] & 0xC0) != 0x80)) {
+                // Truncated sequence, replace the part that was valid
+                position = next;
+                chars[ix++] = REPLACEMENT;
+                return ix;
+            }
+            codePoint = (codePoint << 6) | (bytes[next] & 0x3F);
+        }
+        position = next;
+
+        if ((codePoint < minimum)
+            || (codePoint > Character.MAX_CODE_POINT)
+            || ((codePoint >= Character.MIN_SURROGATE) && (codePoint <= Character.MAX_SURROGATE))) {
+            chars[ix++] = REPLACEMENT;
+        } else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            chars[ix++] = (char) codePoint;
+        } else {
+            chars[ix++] = Character.highSurrogate(codePoint);
+            if (ix < end) {
+                chars[ix++] = Character.lowSurrogate(codePoint);
+            } else {
+                pending = Character.lowSurrogate(codePoint);
+            }
+        }
+        return ix;
+    }
+
+    /**
+     * Reads more bytes, keeping the ones that have not been decoded yet.
+     *
+     * @return false when no more bytes could be read
+     */
+    private boolean fill() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+
+        boolean first = (limit == 0);
+        int remaining = limit - position;
+        System.arraycopy(bytes, position, bytes, 0, remaining);
+        position = 0;
+        limit = remaining;
+
+        int read;
+        if (input != null) {
+            do {
+                read = input.read(bytes, limit, bytes.length - limit);
+            } while (read == 0);
+            if (read < 0) {
+                endOfInput = true;
+                return false;
+            }
+        } else {
+            if (!source.hasRemaining() && (file != null) && (mapped < end)) {
+                source = file.part(mapped, end);
+                mapped += source.remaining();
+            }
+            read = Math.min(source.remaining(), bytes.length - limit);
+            source.get(bytes, limit, read);
+            endOfInput = !source.hasRemaining() && ((file == null) || (mapped >= end));
+        }
+        limit += read;
+
+        if (first) {
+            skipByteOrderMark();
+        }
+        return read > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+    }
+}
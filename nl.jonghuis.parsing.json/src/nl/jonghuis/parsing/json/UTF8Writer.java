@@ -0,0 +1,185 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link Writer} that encodes UTF-8 straight into bytes. It is only ever written in blocks by the
+ * {@link JSONWriter}, so it does not synchronize and runs of ASCII characters are copied without any encoding. Unpaired
+ * surrogates are replaced by '?', just like the {@link java.io.OutputStreamWriter} does.
+ */
+final class UTF8Writer extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CHUNK_SIZE = 1024;
+    private static final byte REPLACEMENT = '?';
+
+    // Only one of these is used
+    private final OutputStream output;
+    private final WritableByteChannel channel;
+
+    private byte[] bytes = BufferRecycler.bytes(BUFFER_SIZE);
+    private int count;
+    // For copying the characters of strings in chunks, only taken when a string is written
+    private char[] chars;
+
+    // The first half of a surrogate pair at the end of the last write, or 0
+    private char pending;
+
+    UTF8Writer(OutputStream output) {
+        this.output = output;
+        channel = null;
+    }
+
+    UTF8Writer(WritableByteChannel channel) {
+        output = null;
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        int ix = offset;
+        int end = offset + length;
+        if ((pending != 0) && (ix < end)) {
+            if (Character.isLowSurrogate(chars[ix])) {
+                ensureSpace(4);
+                encode(Character.toCodePoint(pending, chars[ix++]));
+            } else {
+                ensureSpace(1);
+                bytes[count++] = REPLACEMENT;
+            }
+            pending = 0;
+        }
+
+        while (ix < end) {
+            // Copy runs of ASCII characters, with one bounds check per run
+            ensureSpace(4);
+            int stop = Math.min(end, ix + bytes.length - count);
+            char c;
+            while ((ix < stop) && ((c = chars[ix]) < 0x80)) {
+                bytes[count++] = (byte) c;
+                ix++;
+            }
+            if (ix == end) {
+                break;
+            }
+
+            c = chars[ix++];
+            ensureSpace(4);
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[count++] = (byte) (0xC0 | (c >> 6));
+                bytes[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                if (ix == end) {
+                    pending = c;
+                } else if (Character.isLowSurrogate(chars[ix])) {
+                    encode(Character.toCodePoint(c, chars[ix++]));
+                } else {
+                    bytes[count++] = REPLACEMENT;
+                }
+            } else if (Character.isLowSurrogate(c)) {
+                bytes[count++] = REPLACEMENT;
+            } else {
+                bytes[count++] = (byte) (0xE0 | (c >> 12));
+                bytes[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        char[] chars = chunk();
+        chars[0] = (char) c;
+        write(chars, 0, 1);
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        char[] chars = chunk();
+        int end = offset + length;
+        while (offset < end) {
+            int size = Math.min(end - offset, chars.length);
+            string.getChars(offset, offset + size, chars, 0);
+            write(chars, 0, size);
+            offset += size;
+        }
+    }
+
+    private char[] chunk() {
+        if (chars == null) {
+            chars = BufferRecycler.chars(CHUNK_SIZE);
+        }
+        return chars;
+    }
+
+    private void encode(int codePoint) {
+        bytes[count++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[count++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void ensureSpace(int size) throws IOException {
+        if (count + size > bytes.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count > 0) {
+            if (output != null) {
+                output.write(bytes, 0, count);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, count);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes all the encoded bytes, without flushing or closing the output, and returns the buffer to be reused. This
+     * writer can not be used anymore afterwards.
+     */
+    void release() throws IOException {
+        if (pending != 0) {
+            ensureSpace(1);
+            bytes[count++] = REPLACEMENT;
+            pending = 0;
+        }
+        drain();
+        BufferRecycler.release(bytes);
+        bytes = null;
+        if (chars != null) {
+            BufferRecycler.release(chars);
+            chars = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (output != null) {
+            output.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (bytes != null) {
+            release();
+        }
+        if (output != null) {
+            output.close();
+        } else {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactObjectsTest {
+    private static final String RECORDS = "[{\"id\": 1, \"name\": \"a\", \"tags\": {\"x\": true}},\n"
+                                          + " {\"id\": 2, \"name\": \"b\", \"tags\": {\"x\": false}},\n"
+                                          + " {\"name\": \"c\", \"id\": 3.5, \"tags\": {}}]";
+
+    @Test
+    public void testShapes() throws IOException, UnexpectedTypeException {
+        JSONArray records = new JSONDecoder(RECORDS).compactObjects().parseArray();
+        Assert.assertEquals(new JSONDecoder(RECORDS).parseArray(), records);
+        Assert.assertEquals(RECORDS.replaceAll("\\s", ""), JSONEncoder.toString(records));
+
+        CompactJSONObject first = (CompactJSONObject) records.getObject(0);
+        CompactJSONObject second = (CompactJSONObject) records.getObject(1);
+        CompactJSONObject third = (CompactJSONObject) records.getObject(2);
+        Assert.assertSame(first.keys(), second.keys());
+        Assert.assertSame(first.getObject("tags").keySet().iterator().next(),
+                          second.getObject("tags").keySet().iterator().next());
+        Assert.assertEquals(Arrays.asList("name", "id", "tags"), Arrays.asList(third.keys()));
+
+        Assert.assertEquals("a", first.getString("name"));
+        Assert.assertEquals(3.5, third.getDouble("id"), 0);
+        Assert.assertTrue(first.containsKey("tags"));
+        Assert.assertFalse(first.containsKey("other"));
+        Assert.assertNull(first.get("other"));
+
+        // The shapes are shared between decoders through the key cache
+        JSONKeyCache cache = new JSONKeyCache();
+        JSONObject a = new JSONDecoder("{\"x\": 1, \"y\": 2}").withKeyCache(cache).compactObjects().parseObject();
+        JSONObject b = new JSONDecoder("{\"x\": 3, \"y\": 4}").withKeyCache(cache).compactObjects().parseObject();
+        Assert.assertSame(((CompactJSONObject) a).keys(), ((CompactJSONObject) b).keys());
+    }
+
+    @Test
+    public void testLarge() throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (int ix = 0; ix < 20; ix++) {
+            json.append(ix == 0 ? "" : ", ").append("\"k").append(ix).append("\": {\"v\": ").append(ix).append('}');
+        }
+        json.append('}');
+        JSONObject object = new JSONDecoder(json.toString()).compactObjects().parseObject();
+        Assert.assertFalse(object instanceof CompactJSONObject);
+        Assert.assertEquals(new JSONDecoder(json.toString()).parseObject(), object);
+        Assert.assertTrue(object.get("k19") instanceof CompactJSONObject);
+
+        try {
+            new JSONDecoder("{\"a\": 1, \"b\": 2, \"a\": 3}").compactObjects().parseObject();
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Duplicate key \"a\" in object @ line 1 character 18", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testMap() throws Exception {
+        JSONObject object = new JSONDecoder("{\"a\": 1, \"b\": 2, \"c\": 3}").compactObjects().parseObject();
+        JSONObject other = new JSONDecoder("{\"a\": 1, \"b\": 2, \"c\": 3}").compactObjects().parseObject();
+
+        // Changing values keeps the object compact
+        object.put("b", 20);
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            if (entry.getKey().equals("c")) {
+                entry.setValue(30);
+            }
+        }
+        Assert.assertNotNull(((CompactJSONObject) object).keys());
+        Assert.assertEquals(new JSONObject().$("a", 1).$("b", 20).$("c", 30), object);
+        Assert.assertEquals(new JSONObject().$("a", 1).$("b", 20).$("c", 30).hashCode(), object.hashCode());
+        Assert.assertTrue(object.containsValue(30));
+
+        // Other changes copy the entries into the map first
+        Iterator<String> keys = object.keySet().iterator();
+        keys.next();
+        keys.remove();
+        object.put("d", 4);
+        Assert.assertNull(((CompactJSONObject) object).keys());
+        Assert.assertEquals(Arrays.asList("b", "c", "d"), Arrays.asList(object.keySet().toArray()));
+        Assert.assertEquals("{\"b\":20,\"c\":30,\"d\":4}", object.toJson());
+
+        // Iterators fail after other changes, but keep working after removing through them
+        JSONObject changed = new JSONDecoder("{\"a\": 1, \"b\": 2}").compactObjects().parseObject();
+        Iterator<String> changedKeys = changed.keySet().iterator();
+        changed.put("c", 3);
+        try {
+            changedKeys.next();
+            Assert.fail("Expected a ConcurrentModificationException");
+        } catch (ConcurrentModificationException e) {
+            // Expected
+        }
+        JSONObject removed = new JSONDecoder("{\"a\": 1, \"b\": 2, \"c\": 3}").compactObjects().parseObject();
+        removed.values().removeIf(value -> value.equals(1) || value.equals(3));
+        Assert.assertEquals(new JSONObject().$("b", 2), removed);
+
+        // The other object with the same shape has not changed
+        Assert.assertEquals(new JSONObject().$("a", 1).$("b", 2).$("c", 3), other);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(other);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Assert.assertEquals(other, input.readObject());
+        }
+    }
+}
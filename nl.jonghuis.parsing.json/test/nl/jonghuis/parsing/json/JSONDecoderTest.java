@@ -1,8 +1,19 @@
 package nl.jonghuis.parsing.json;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -56,6 +67,20 @@ public class JSONDecoderTest {
         // Test escaping characters
         testCorrect("{\"text\":\"\\t \\b \\n \\r \\\\ \\\"\"}", new JSONObject().$("text", "\t \b \n \r \\ \""));
 
+        // Long strings, with and without escapes, that do not fit in the buffer
+        StringBuilder plain = new StringBuilder();
+        StringBuilder escaped = new StringBuilder();
+        for (int ix = 0; ix < 5000; ix++) {
+            plain.append((char) ('a' + (ix % 26)));
+            escaped.append((char) ('a' + (ix % 26)));
+            if (ix % 1000 == 999) {
+                escaped.append("\\n\\u00e9\\\"");
+            }
+        }
+        testCorrect("[\"" + plain + "\"]", new JSONArray().$(plain.toString()));
+        testCorrect("[\"" + escaped + "\"]",
+                    new JSONArray().$(escaped.toString().replace("\\n", "\n").replace("\\u00e9", "\u00e9").replace("\\\"", "\"")));
+
         // Test the extra random whitespace (which should be ignored)
         testCorrect("\n\n  \t{\"number\":49846546573379,   \t\"text\"   \n :\t\" \\tbla\"}   \t",
                     new JSONObject().$("number", 49846546573379L).$("text", " \tbla"));
@@ -85,6 +110,164 @@ public class JSONDecoderTest {
     private void testCorrect(String json, Object expected) throws IOException {
         Object parsed = JSONDecoder.parse(json);
         Assert.assertEquals(expected, parsed);
+
+        // Using a tiny buffer, the input has to be refilled many times
+        parsed = new JSONDecoder(new StringReader(json), 4).parseValue();
+        Assert.assertEquals(expected, parsed);
+
+        // Decoding directly from the UTF-8 bytes
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(expected, JSONDecoder.parse(bytes));
+        Assert.assertEquals(expected, JSONDecoder.parse(trickle(bytes)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(expected, JSONDecoder.parse(direct));
+        Assert.assertEquals(bytes.length, direct.remaining());
+
+        // Skipping consumes exactly the same input
+        JSONDecoder decoder = new JSONDecoder(new StringReader(json + " 0"), 4);
+        decoder.skipValue();
+        Assert.assertEquals(0, decoder.parseValue());
+        Assert.assertTrue(decoder.isEndOfFile());
+    }
+
+    /**
+     * @return A stream that only returns a single byte on each read, to split up all the UTF-8 sequences
+     */
+    private InputStream trickle(byte[] bytes) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    @Test
+    public void testNumberDecoding() throws IOException {
+        // Edge cases of the double conversion
+        testCorrect("9007199254740993.0", 9007199254740992.0);
+        testCorrect("2.2250738585072011e-308", 2.2250738585072011e-308);
+        testCorrect("4.9e-324", 4.9e-324);
+        testCorrect("1.7976931348623159e308", Double.POSITIVE_INFINITY);
+        testCorrect("12345678901234567890.5", 12345678901234567890.5);
+        testCorrect("1.00000000000000000000000001", 1.0);
+        // Like BigDecimal.doubleValue(), zero is never negative, but negative numbers that are too small are
+        testCorrect("-0.0", 0.0);
+        testCorrect("-1e-400", -0.0);
+        testCorrect("[-0, 000123, 123456789, 1234567890, 123456789012345678, 1234567890123456789]",
+                    new JSONArray().$(0)
+                                   .$(123)
+                                   .$(123456789)
+                                   .$(1234567890L)
+                                   .$(123456789012345678L)
+                                   .$(new BigInteger("1234567890123456789")));
+
+        // Random numbers should result in the same double as through a BigDecimal
+        Random random = new Random(1234);
+        for (int ix = 0; ix < 10000; ix++) {
+            String number = (random.nextBoolean() ? "-" : "")
+                            + Math.abs(random.nextLong() >> random.nextInt(64))
+                            + "."
+                            + Math.abs(random.nextLong() >> random.nextInt(64))
+                            + "e"
+                            + (random.nextInt(700) - 350);
+            Object parsed = JSONDecoder.parse(number);
+            Assert.assertEquals(number, new BigDecimal(number).doubleValue(), parsed);
+        }
+    }
+
+    @Test
+    public void testUTF8Decoding() throws IOException {
+        testCorrect("\"\uD83D\uDE00 \u00e9\u00E8 \u20AC\"", "\uD83D\uDE00 \u00e9\u00E8 \u20AC");
+        testCorrect("[\"\u00e9\", \"\uD83D\uDE00\", \"\u9001\"]",
+                    new JSONArray().$("\u00e9").$("\uD83D\uDE00").$("\u9001"));
+
+        // The byte order mark is skipped
+        byte[] withBom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '[', '1', ']' };
+        Assert.assertEquals(new JSONArray().$(1), JSONDecoder.parse(withBom));
+        Assert.assertEquals(new JSONArray().$(1), JSONDecoder.parse(new ByteArrayInputStream(withBom)));
+
+        // Malformed sequences are replaced
+        byte[] malformed = { '"', 'a', (byte) 0xC3, '"' };
+        Assert.assertEquals("a\uFFFD", JSONDecoder.parse(malformed));
+        Assert.assertEquals("a\uFFFD", JSONDecoder.parse(trickle(malformed)));
+    }
+
+    @Test
+    public void testFileDecoding() throws IOException, UnexpectedTypeException {
+        JSONObject expected = new JSONObject().$("text", "\u9001 \uD83D\uDE00 \u00e9")
+                                              .$("list", new JSONArray().$(1).$(2.5).$(null))
+                                              .$("empty", new JSONObject());
+
+        Path file = Files.createTempFile("json", ".json");
+        try {
+            Files.write(file, expected.toJson().getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(expected, JSONDecoder.parse(file));
+            Assert.assertEquals(expected, JSONObject.from(file));
+
+            // Map the file in tiny regions, to split up values and UTF-8 sequences
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Assert.assertEquals(expected, new JSONDecoder(new UTF8Reader(channel, 5)).parseValue());
+            }
+
+            Files.write(file, "[ ]".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(new JSONArray(), JSONArray.from(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testKeyCache() throws IOException, UnexpectedTypeException {
+        String json = "[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"n\\u0061me\":\"b\"}]";
+
+        JSONArray plain = (JSONArray) new JSONDecoder(json).parseValue();
+        Assert.assertNotSame(key(plain, 0, 0), key(plain, 1, 0));
+
+        JSONKeyCache cache = new JSONKeyCache(16);
+        JSONArray first = (JSONArray) new JSONDecoder(json).withKeyCache(cache).parseValue();
+        JSONArray second = (JSONArray) new JSONDecoder(new StringReader(json), 4).withKeyCache(cache).parseValue();
+        Assert.assertEquals(plain, first);
+        Assert.assertEquals(plain, second);
+        Assert.assertSame(key(first, 0, 0), key(first, 1, 0));
+        Assert.assertSame(key(first, 0, 0), key(second, 0, 0));
+        // Keys with escapes end up as the same instance as well
+        Assert.assertSame(key(first, 0, 1), key(first, 1, 1));
+        Assert.assertSame(key(first, 0, 1), key(second, 1, 1));
+
+        JSONReader reader = new JSONReader(new JSONDecoder(json).withKeyCache(cache));
+        reader.nextToken();
+        reader.nextToken();
+        reader.nextToken();
+        Assert.assertSame(key(first, 0, 0), reader.getString());
+    }
+
+    private static String key(JSONArray array, int index, int field) {
+        return (String) ((JSONObject) array.get(index)).keySet().toArray()[field];
+    }
+
+    @Test
+    public void testSkipValue() throws IOException {
+        JSONDecoder decoder = new JSONDecoder("{\"a\":[1,{\"b\":\"\\\"}]\"}],\"c\":-1.5e+3} [] \"x\" [{\"d\":null}, true]");
+        decoder.skipValue();
+        decoder.skipValue();
+        decoder.skipValue();
+        JSONArray last = decoder.parseArray();
+        Assert.assertEquals(new JSONArray().$(new JSONObject().$("d", null)).$(true), last);
+        Assert.assertTrue(decoder.isEndOfFile());
+
+        // Deep nesting does not need the stack
+        StringBuilder deep = new StringBuilder();
+        for (int ix = 0; ix < 100000; ix++) {
+            deep.append("{\"a\":[");
+        }
+        for (int ix = 0; ix < 100000; ix++) {
+            deep.append("]}");
+        }
+        decoder = new JSONDecoder(deep.append(" 1").toString());
+        decoder.skipValue();
+        Assert.assertEquals(1, decoder.parseValue());
     }
 
     @Test
@@ -100,11 +283,16 @@ public class JSONDecoderTest {
         testIncorrect("\"123\n\"", "Control character in string found @ line 2 character 0");
         testIncorrect("123. ", "Fraction part started, but no digits found @ line 1 character 5");
         testIncorrect("123.1e ", "Exponential part started, but no digits found @ line 1 character 7");
+        testIncorrect("[-]", "Number started, but no digits found @ line 1 character 3");
         testIncorrect("treu", "Unexpected character 'e', expected a 'u' @ line 1 character 3");
         testIncorrect("falze", "Unexpected character 'z', expected a 's' @ line 1 character 4");
         testIncorrect("nul", "Premature end of file found @ line 1 character 4");
         testIncorrect("\"\\u000z\"", "Invalid character for unicode character \'z\' @ line 1 character 7");
         testIncorrect("{ \"dup\":1, \"dup\":2 }", "Duplicate key \"dup\" in object @ line 1 character 12");
+        testIncorrect("{\"a\":null, \"a\":1}", "Duplicate key \"a\" in object @ line 1 character 12");
+        testIncorrect("{\n  \"a\" : 1,\n  \"long key name\":\n2,\n  \"long key name\" : 3 }",
+                      "Duplicate key \"long key name\" in object @ line 5 character 3");
+        testIncorrect("[1,\n2,\n3,\n4,\n5,\n6 7]", "Unexpected character '7', expected a a comma @ line 6 character 3");
     }
 
     private void testIncorrect(String json, String expectedMessage) throws IOException {
@@ -117,5 +305,26 @@ public class JSONDecoderTest {
         } catch (JSONParseException ex) {
             Assert.assertEquals(expectedMessage, ex.getMessage());
         }
+
+        // The reported position should not depend on how the input was buffered
+        try {
+            Object object = new JSONDecoder(new StringReader(json), 4).parseValue();
+            Assert.fail("Expected to fail with message \""
+                        + expectedMessage
+                        + "\", but it didn't, it returned: "
+                        + object);
+        } catch (JSONParseException ex) {
+            Assert.assertEquals(expectedMessage, ex.getMessage());
+        }
+
+        // Skipping the value finds the same errors, except for duplicate keys
+        if (!expectedMessage.startsWith("Duplicate key")) {
+            try {
+                new JSONDecoder(new StringReader(json), 4).skipValue();
+                Assert.fail("Expected to fail with message \"" + expectedMessage + "\" when skipping");
+            } catch (JSONParseException ex) {
+                Assert.assertEquals(expectedMessage, ex.getMessage());
+            }
+        }
     }
 }
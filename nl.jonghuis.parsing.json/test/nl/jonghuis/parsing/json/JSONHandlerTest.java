@@ -0,0 +1,116 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONHandlerTest {
+    /**
+     * Writes all the events as text, to compare them easily.
+     */
+    private static class RecordingHandler implements JSONHandler {
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void startObject() {
+            events.append("{ ");
+        }
+
+        @Override
+        public void name(String name) {
+            events.append("name:").append(name).append(' ');
+        }
+
+        @Override
+        public void endObject() {
+            events.append("} ");
+        }
+
+        @Override
+        public void startArray() {
+            events.append("[ ");
+        }
+
+        @Override
+        public void endArray() {
+            events.append("] ");
+        }
+
+        @Override
+        public void value(String value) {
+            events.append("string:").append(value).append(' ');
+        }
+
+        @Override
+        public void value(int value) {
+            events.append("int:").append(value).append(' ');
+        }
+
+        @Override
+        public void value(long value) {
+            events.append("long:").append(value).append(' ');
+        }
+
+        @Override
+        public void value(double value) {
+            events.append("double:").append(value).append(' ');
+        }
+
+        @Override
+        public void value(Number value) {
+            events.append(value.getClass().getSimpleName()).append(':').append(value).append(' ');
+        }
+
+        @Override
+        public void value(boolean value) {
+            events.append("boolean:").append(value).append(' ');
+        }
+
+        @Override
+        public void nullValue() {
+            events.append("null ");
+        }
+    }
+
+    @Test
+    public void testEvents() throws IOException {
+        testEvents("{}", "{ } ");
+        testEvents("[]", "[ ] ");
+        testEvents("{ \"a\" : [1, 12345678901, 2.5, \"x\", true, false, null], \"b\" : { } }",
+                   "{ name:a [ int:1 long:12345678901 double:2.5 string:x boolean:true boolean:false null ] name:b { } } ");
+        testEvents("[12345678901234567890, 1e3000]",
+                   "[ BigInteger:" + new BigInteger("12345678901234567890") + " BigDecimal:" + new BigDecimal("1e3000") + " ] ");
+    }
+
+    private void testEvents(String json, String expected) throws IOException {
+        RecordingHandler handler = new RecordingHandler();
+        new JSONDecoder(json).parseValue(handler);
+        Assert.assertEquals(expected, handler.events.toString());
+    }
+
+    @Test
+    public void testPartialHandler() throws IOException {
+        // Only sums up the numbers, all the other events are ignored
+        final long[] sum = new long[1];
+        new JSONDecoder("[{\"a\":1,\"b\":\"x\"},{\"a\":2},{\"a\":3,\"c\":[4]}]").parseValue(new JSONHandler() {
+            @Override
+            public void value(int value) {
+                sum[0] += value;
+            }
+        });
+        Assert.assertEquals(10, sum[0]);
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        try {
+            new JSONDecoder("{\"a\":[1,2}").parseValue(new RecordingHandler());
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException ex) {
+            Assert.assertEquals("Unexpected character '}', expected a a comma @ line 1 character 10", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JSONPathTest {
+    private static final String EVENT = "{\n"
+                                        + "  \"type\" : \"login\",\n"
+                                        + "  \"payload\" : {\n"
+                                        + "    \"skipped\" : { \"id\" : 1, \"list\" : [ [ ], { \"user\" : 2 } ] },\n"
+                                        + "    \"user\" : { \"id\" : 42, \"name\" : \"Marc\" },\n"
+                                        + "    \"us\\u0065rs\" : [ { \"id\" : 1 }, { \"id\" : 2.5 }, { \"name\" : \"x\" } ]\n"
+                                        + "  },\n"
+                                        + "  \"\\\"quoted\\\"\" : true\n"
+                                        + "}";
+
+    private static void assertSelects(String path, Object... expected) throws IOException {
+        JSONPath compiled = JSONPath.compile(path);
+        Assert.assertEquals(path, compiled.toString());
+        Assert.assertEquals(Arrays.asList(expected), compiled.select(EVENT));
+        Assert.assertEquals(Arrays.asList(expected), compiled.select(new JSONDecoder(new StringReader(EVENT), 4)));
+        Assert.assertEquals(expected.length == 0 ? null : expected[0], compiled.first(EVENT));
+    }
+
+    @Test
+    public void testSelect() throws IOException {
+        assertSelects("$", JSONObject.from(EVENT));
+        assertSelects("$.type", "login");
+        assertSelects("$.payload.user.id", 42);
+        assertSelects("$['payload'][\"user\"]['name']", "Marc");
+        assertSelects("$.payload.users[1].id", 2.5);
+        assertSelects("$.payload.users[*].id", 1, 2.5);
+        assertSelects("$.payload.*.id", 1, 42);
+        assertSelects("$.payload.users[2]", new JSONObject().$("name", "x"));
+        assertSelects("$['\"quoted\"']", true);
+        assertSelects("$.*.user", new JSONObject().$("id", 42).$("name", "Marc"));
+    }
+
+    @Test
+    public void testNoMatch() throws IOException {
+        assertSelects("$.payload.user.missing");
+        assertSelects("$.payload.users[3]");
+        assertSelects("$.type.length");
+        assertSelects("$[0]");
+        assertSelects("$.payload.users.id");
+    }
+
+    @Test
+    public void testDecoderIsPositionedAfterValue() throws IOException {
+        JSONDecoder decoder = new JSONDecoder("{\"a\":{\"b\":1,\"c\":[2]}} {\"a\":{\"b\":3}} [4]");
+        JSONPath path = JSONPath.compile("$.a.b");
+        Assert.assertEquals(Collections.singletonList(1), path.select(decoder));
+        Assert.assertEquals(Collections.singletonList(3), path.select(decoder));
+        Assert.assertEquals(new JSONArray().$(4), decoder.parseValue());
+    }
+
+    @Test
+    public void testSkippedValuesAreChecked() {
+        try {
+            JSONPath.compile("$.a").select("{\"a\":1,\"b\":[1,2}");
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Unexpected character '}', expected a a comma @ line 1 character 16", e.getMessage());
+        }
+
+        try {
+            JSONPath.compile("$.b").select("{\"a\":{\"x\":tru},\"b\":1}");
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals(1, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void testFirstStopsReading() throws JSONParseException {
+        Assert.assertEquals(1, JSONPath.compile("$.a").first("{\"a\":1,\"b\": this is not read"));
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        for (String path : new String[] { "a.b", "$.", "$..a", "$[1", "$[-1]", "$[x]", "$a" }) {
+            try {
+                JSONPath.compile(path);
+                Assert.fail("Expected " + path + " to be invalid");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.jonghuis.parsing.json.JSONReader.Token;
+
+public class JSONReaderTest {
+    @Test
+    public void testTokens() throws IOException, UnexpectedTypeException {
+        JSONReader reader = new JSONReader(" { \"a\" : [1, 2.5, \"x\"], \"b\":{\"c\":true}, \"d\" : null, \"e\":false } ");
+
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals("a", reader.currentName());
+        Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+        Assert.assertEquals("a", reader.currentName());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(1, reader.getInt());
+        Assert.assertNull(reader.currentName());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(2.5, reader.getDouble(), 0.0);
+        Assert.assertEquals(Token.STRING, reader.nextToken());
+        Assert.assertEquals("x", reader.getString());
+        Assert.assertEquals(Token.END_ARRAY, reader.nextToken());
+        Assert.assertEquals("a", reader.currentName());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        Assert.assertEquals("b", reader.currentName());
+        Assert.assertEquals(2, reader.getDepth());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals("c", reader.getString());
+        Assert.assertEquals(Token.TRUE, reader.nextToken());
+        Assert.assertTrue(reader.getBoolean());
+        Assert.assertEquals(Token.END_OBJECT, reader.nextToken());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals(Token.NULL, reader.nextToken());
+        Assert.assertEquals("d", reader.currentName());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals(Token.FALSE, reader.nextToken());
+        Assert.assertFalse(reader.getBoolean());
+        Assert.assertEquals(Token.END_OBJECT, reader.nextToken());
+        Assert.assertEquals(0, reader.getDepth());
+        Assert.assertNull(reader.nextToken());
+    }
+
+    @Test
+    public void testSkipAndRead() throws IOException, UnexpectedTypeException {
+        String json = "[{\"id\":1,\"tags\":[\"a\",{\"b\":[]}]},{\"id\":2,\"tags\":[]},{\"id\":3}]";
+        JSONReader reader = new JSONReader(new JSONDecoder(new StringReader(json), 4));
+
+        Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        reader.skipChildren();
+        Assert.assertEquals(Token.END_OBJECT, reader.currentToken());
+
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        Assert.assertEquals(new JSONObject().$("id", 2).$("tags", new JSONArray()), reader.readObject());
+        Assert.assertEquals(Token.END_OBJECT, reader.currentToken());
+
+        Assert.assertEquals(Token.START_OBJECT, reader.nextToken());
+        Assert.assertEquals(Token.NAME, reader.nextToken());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(3L, reader.getLong());
+        Assert.assertEquals(Token.END_OBJECT, reader.nextToken());
+        Assert.assertEquals(Token.END_ARRAY, reader.nextToken());
+        Assert.assertNull(reader.nextToken());
+    }
+
+    @Test
+    public void testMultipleValues() throws IOException, UnexpectedTypeException {
+        JSONReader reader = new JSONReader("1\n\"two\"\n[3]\n");
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(Token.STRING, reader.nextToken());
+        Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+        Assert.assertEquals(new JSONArray().$(3), reader.readArray());
+        Assert.assertNull(reader.nextToken());
+    }
+
+    @Test
+    public void testNumbers() throws IOException, UnexpectedTypeException {
+        // Converted like the typed decoding, so decimal numbers outside the range saturate
+        JSONReader reader = new JSONReader("[3e10, -1e30, 1.5, 12345678901234567890]");
+        Assert.assertEquals(Token.START_ARRAY, reader.nextToken());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(Integer.MAX_VALUE, reader.getInt());
+        Assert.assertEquals(30000000000L, reader.getLong());
+        Assert.assertEquals(new JSONDecoder("3e10").parseValue(int.class).intValue(), reader.getInt());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(Integer.MIN_VALUE, reader.getInt());
+        Assert.assertEquals(Long.MIN_VALUE, reader.getLong());
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(1, reader.getInt());
+        Assert.assertEquals(1.5, reader.getDouble(), 0);
+        Assert.assertEquals(Token.NUMBER, reader.nextToken());
+        Assert.assertEquals(new BigInteger("12345678901234567890").longValue(), reader.getLong());
+        Assert.assertEquals(Token.END_ARRAY, reader.nextToken());
+        try {
+            reader.getInt();
+            Assert.fail("Expected an UnexpectedTypeException");
+        } catch (UnexpectedTypeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        testIncorrect("[1 2]", "Unexpected character '2', expected a a comma @ line 1 character 4");
+        testIncorrect("{\"a\" 1}", "Unexpected character '1', expected a colon @ line 1 character 6");
+        testIncorrect("[1,", "Premature end of file found @ line 1 character 4");
+        testIncorrect("{\n  \"a\" : x }", "Unexpected character 'x' found @ line 2 character 9");
+    }
+
+    private void testIncorrect(String json, String expectedMessage) throws IOException {
+        JSONReader reader = new JSONReader(json);
+        try {
+            while (reader.nextToken() != null) {
+                // Read all the tokens
+            }
+            Assert.fail("Expected to fail with message \"" + expectedMessage + "\"");
+        } catch (JSONParseException ex) {
+            Assert.assertEquals(expectedMessage, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import nl.jonghuis.parsing.json.JSONEncoder.Options;
+
+public class JSONWriterTest {
+    private static final String COMPACT = "{\"name\":\"te\\\"st\\/\\u0001\\n\","
+                                          + "\"list\":[1,2.5,null,{\"a\":true,\"bb\":[1,2]}],"
+                                          + "\"empty\":{},\"emptyList\":[],"
+                                          + "\"nested\":{\"x\":{\"y\":12345678901}}}";
+
+    private static final String PRETTY = "{ \"name\" : \"te\\\"st\\/\\u0001\\n\",\n"
+                                         + "  \"list\" : [ 1,\n"
+                                         + "             2.5,\n"
+                                         + "             null,\n"
+                                         + "             { \"a\" : true,\n"
+                                         + "               \"bb\" : [ 1,\n"
+                                         + "                        2]}],\n"
+                                         + "  \"empty\" : { },\n"
+                                         + "  \"emptyList\" : [ ],\n"
+                                         + "  \"nested\" : { \"x\" : { \"y\" : 12345678901}}}";
+
+    private static JSONObject createTree() {
+        return new JSONObject().$("name", "te\"st/\u0001\n")
+                               .$("list",
+                                  new JSONArray().$(1)
+                                                 .$(2.5)
+                                                 .$(null)
+                                                 .$(new JSONObject().$("a", true)
+                                                                    .$("bb", new JSONArray().$(1).$(2))))
+                               .$("empty", new JSONObject())
+                               .$("emptyList", new JSONArray())
+                               .$("nested", new JSONObject().$("x", new JSONObject().$("y", 12345678901L)));
+    }
+
+    private static void writeDocument(JSONWriter writer) throws IOException {
+        writer.beginObject()
+              .name("name")
+              .value("te\"st/\u0001\n")
+              .name("list")
+              .beginArray()
+              .value(1)
+              .value(2.5)
+              .nullValue()
+              .beginObject()
+              .name("a")
+              .value(true)
+              .name("bb")
+              .beginArray()
+              .value(1)
+              .value(2)
+              .endArray()
+              .endObject()
+              .endArray()
+              .name("empty")
+              .beginObject()
+              .endObject()
+              .name("emptyList")
+              .beginArray()
+              .endArray()
+              .name("nested")
+              .beginObject()
+              .name("x")
+              .beginObject()
+              .name("y")
+              .value(12345678901L)
+              .endObject()
+              .endObject()
+              .endObject();
+    }
+
+    @Test
+    public void testWriter() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        JSONWriter writer = new JSONWriter(sb);
+        writeDocument(writer);
+        writer.flush();
+        Assert.assertEquals(COMPACT, sb.toString());
+
+        sb.setLength(0);
+        writer = new JSONWriter(sb, EnumSet.of(Options.PRETTY));
+        writeDocument(writer);
+        writer.flush();
+        Assert.assertEquals(PRETTY, sb.toString());
+    }
+
+    @Test
+    public void testEncoder() throws IOException, UnexpectedTypeException {
+        Assert.assertEquals(COMPACT, createTree().toJson());
+
+        StringBuilder sb = new StringBuilder();
+        new JSONEncoder(sb, EnumSet.of(Options.PRETTY)).write(createTree());
+        Assert.assertEquals(PRETTY, sb.toString());
+
+        // Mixing the generator with complete values
+        sb.setLength(0);
+        JSONWriter writer = new JSONWriter(sb, EnumSet.of(Options.PRETTY));
+        writer.beginArray().value((Object) createTree()).value("x").endArray().flush();
+        Assert.assertEquals("[ " + PRETTY.replace("\n", "\n  ") + ",\n  \"x\"]", sb.toString());
+    }
+
+    @Test
+    public void testEncodeObjects() throws UnexpectedTypeException {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put(1, new int[] { 1, 2 });
+        map.put("set", new TreeSet<>(Arrays.asList("b", "a")));
+        map.put("arrays", new Object[] { new long[] { 3 }, new double[] { 0.5 }, new boolean[] { true }, null });
+        map.put("bean", new ObjectTest.A(1, "y", BigInteger.ONE));
+        Assert.assertEquals("{\"1\":[1,2],\"set\":[\"a\",\"b\"],\"arrays\":[[3],[0.5],[true],null],"
+                            + "\"bean\":{\"x\":1,\"y\":\"y\",\"z\":1}}",
+                            JSONEncoder.toString(map));
+
+        // Beans are written in the same way as when they are copied into an object first
+        List<Object> beans = Arrays.asList(new ObjectTest.A(), new ObjectTest.B(true, new ObjectTest.A(2)));
+        Assert.assertEquals(new JSONArray(beans).toJson(), JSONEncoder.toString(beans));
+        Assert.assertEquals(JSONObject.as(beans.get(1)).toJson(), JSONEncoder.toString(beans.get(1)));
+    }
+
+    @Test(expected = UnexpectedTypeException.class)
+    public void testEncodeNoBean() throws UnexpectedTypeException {
+        JSONEncoder.toString(Collections.singletonList(new Object()));
+    }
+
+    @Test
+    public void testLargeOutput() throws IOException {
+        // Only complete chunks are written to the output, until the writer is flushed
+        final int[] appends = new int[1];
+        StringBuilder target = new StringBuilder();
+        Appendable out = new Appendable() {
+            @Override
+            public Appendable append(CharSequence csq) {
+                appends[0]++;
+                target.append(csq);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence csq, int start, int end) {
+                return append(csq.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) {
+                return append(String.valueOf(c));
+            }
+        };
+
+        JSONWriter writer = new JSONWriter(out);
+        writer.beginArray();
+        for (int ix = 0; ix < 100000; ix++) {
+            writer.beginObject().name("index").value(ix).name("text").value("value " + ix).endObject();
+        }
+        writer.endArray().flush();
+
+        Assert.assertTrue("Too many appends: " + appends[0], appends[0] < target.length() / 4096);
+        JSONArray result = JSONArray.from(target.toString());
+        Assert.assertEquals(100000, result.size());
+        Assert.assertEquals(new JSONObject().$("index", 99999).$("text", "value 99999"), result.get(99999));
+    }
+
+    @Test
+    public void testOutputStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JSONWriter writer = new JSONWriter(bytes)) {
+            writer.beginArray().value("送 😀").endArray();
+        }
+        Assert.assertEquals("[\"送 😀\"]", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUTF8() throws IOException, UnexpectedTypeException {
+        // Make sure the surrogate pairs end up on both sides of the boundaries of the buffers
+        StringBuilder sb = new StringBuilder();
+        for (int ix = 0; ix < 5000; ix++) {
+            sb.append(ix % 7 == 0 ? "😀" : ix % 3 == 0 ? "é" : ix % 2 == 0 ? "送" : "x");
+        }
+        String text = sb.toString();
+        String expected = "[\"" + text + "\",\"? ?\"]";
+        List<String> values = Arrays.asList(text, "\ud800 \udc00");
+
+        Assert.assertEquals(expected, new String(JSONEncoder.toBytes(values), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JSONEncoder.encode(values, Channels.newChannel(bytes));
+        Assert.assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        // Strings are copied in chunks, which split some of the surrogate pairs
+        bytes.reset();
+        try (UTF8Writer writer = new UTF8Writer(bytes)) {
+            writer.write(text, 2, text.length() - 2);
+            writer.write('!');
+        }
+        Assert.assertEquals(text.substring(2) + "!", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNumbers() throws IOException, UnexpectedTypeException {
+        StringBuilder sb = new StringBuilder();
+        new JSONWriter(sb).beginArray()
+                          .value(0)
+                          .value(-7)
+                          .value(Integer.MIN_VALUE)
+                          .value(Long.MAX_VALUE)
+                          .value(Long.MIN_VALUE)
+                          .value(0.0)
+                          .value(-0.0)
+                          .value(1.0)
+                          .value(0.1)
+                          .value(1234567.125)
+                          .value(1e7)
+                          .value(0.001)
+                          .value(1e-4)
+                          .value(-2.5e-300)
+                          .value(Double.MAX_VALUE)
+                          .value(Double.MIN_VALUE)
+                          .value(1.1f)
+                          .value(Short.valueOf((short) 3))
+                          .value(new BigDecimal("1.50"))
+                          .endArray()
+                          .flush();
+        Assert.assertEquals("[0,-7,-2147483648,9223372036854775807,-9223372036854775808,0.0,-0.0,1.0,0.1,1234567.125,"
+                            + "1.0E7,0.001,1.0E-4,-2.5E-300,1.7976931348623157E308,4.9E-324,1.1,3,1.50]",
+                            sb.toString());
+
+        // Doubles are written with the shortest digits that are read back as the same value
+        Assert.assertEquals("[0.002,1.0E23,8.815592190770862E18]",
+                            JSONEncoder.toString(new double[] { 2e-3, 1e23, 8.815592190770862E18 }));
+        Random random = new Random(1);
+        double[] values = new double[10000];
+        for (int ix = 0; ix < values.length; ix++) {
+            values[ix] = Double.longBitsToDouble(random.nextLong());
+            if (Double.isNaN(values[ix]) || Double.isInfinite(values[ix])) {
+                values[ix] = random.nextDouble();
+            }
+        }
+        double[] decoded = new JSONDecoder(JSONEncoder.toString(values)).parseValue(double[].class);
+        Assert.assertArrayEquals(values, decoded, 0);
+    }
+
+    @Test
+    public void testEscaping() throws IOException, UnexpectedTypeException {
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder("\"");
+        for (char c = 0; c < 160; c++) {
+            text.append(c);
+            if ((c < 32) || (c == 127)) {
+                expected.append(String.format("\\u%04x", (int) c));
+            } else if ((c == '"') || (c == '\\') || (c == '/')) {
+                expected.append('\\').append(c);
+            } else {
+                expected.append(c);
+            }
+        }
+        expected.append('"');
+        String escaped = expected.toString().replace("\\u0008", "\\b")
+                                            .replace("\\u0009", "\\t")
+                                            .replace("\\u000a", "\\n")
+                                            .replace("\\u000c", "\\f")
+                                            .replace("\\u000d", "\\r");
+        Assert.assertEquals(escaped, JSONEncoder.toString(text.toString()));
+
+        // Long runs are split over the buffer, also when they are not taken from a String
+        char[] run = new char[20000];
+        Arrays.fill(run, 'a');
+        StringBuilder sb = new StringBuilder();
+        new JSONWriter(sb).value(new StringBuilder().append(run).append('\n').append(run)).flush();
+        Assert.assertEquals("\"" + new String(run) + "\\n" + new String(run) + "\"", sb.toString());
+    }
+
+    @Test
+    public void testNullValues() throws IOException, UnexpectedTypeException {
+        StringBuilder sb = new StringBuilder();
+        JSONWriter writer = new JSONWriter(sb);
+        writer.beginArray().value((String) null).value((Number) null).value((Object) null).nullValue().endArray();
+        writer.flush();
+        Assert.assertEquals("[null,null,null,null]", sb.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testValueWithoutName() throws IOException {
+        new JSONWriter(new StringBuilder()).beginObject().value(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalanced() throws IOException {
+        new JSONWriter(new StringBuilder()).beginArray().endObject();
+    }
+}
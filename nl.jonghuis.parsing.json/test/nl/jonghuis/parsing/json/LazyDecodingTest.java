@@ -0,0 +1,122 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyDecodingTest {
+    private static final String DOCUMENT = "{\n"
+                                           + "  \"id\" : 12,\n"
+                                           + "  \"name\" : \"Lazy \\\"quoted\\\" \\u00e9\",\n"
+                                           + "  \"tags\" : [ \"a\", \"b\", [ ], { } ],\n"
+                                           + "  \"nested\" : { \"list\" : [ 1, 2.5, -3e10, true, false, null ] },\n"
+                                           + "  \"big\" : 123456789012345678901234567890\n"
+                                           + "}";
+
+    @Test
+    public void testSameAsTree() throws IOException, ClassNotFoundException, UnexpectedTypeException {
+        JSONObject expected = JSONObject.from(DOCUMENT);
+
+        Assert.assertEquals(expected, JSONObject.lazy(DOCUMENT));
+        Assert.assertEquals(JSONObject.lazy(DOCUMENT), expected);
+        Assert.assertEquals(expected, JSONObject.lazy(DOCUMENT.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(expected, new JSONDecoder(new StringReader(DOCUMENT), 4).lazy().parseValue());
+        Assert.assertEquals(expected.toJson(), JSONObject.lazy(DOCUMENT).toJson());
+        Assert.assertEquals(expected.hashCode(), JSONObject.lazy(DOCUMENT).hashCode());
+
+        JSONArray array = JSONArray.lazy("[" + DOCUMENT + ", 1, \"x\"]");
+        Assert.assertEquals(new JSONArray().$(expected).$(1).$("x"), array);
+        Assert.assertEquals(3, array.size());
+
+        // Lazy containers are replaced by normal ones when serialized
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(JSONObject.lazy(DOCUMENT));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object copy = in.readObject();
+            Assert.assertEquals(JSONObject.class, copy.getClass());
+            Assert.assertEquals(expected, copy);
+        }
+    }
+
+    @Test
+    public void testAccess() throws IOException, UnexpectedTypeException {
+        JSONObject object = JSONObject.lazy(DOCUMENT);
+        Assert.assertEquals(12, object.getInt("id"));
+        Assert.assertEquals("Lazy \"quoted\" \u00e9", object.getString("name"));
+        Assert.assertEquals(-3e10, object.getObject("nested").getArray("list").get(2));
+        Assert.assertNull(object.get("missing"));
+        Assert.assertEquals("default", object.getOrDefault("missing", "default"));
+
+        Assert.assertEquals(12, object.put("id", 13));
+        Assert.assertEquals(13, object.remove("id"));
+        Assert.assertEquals(new JSONArray().$("a").$("b").$(new JSONArray()).$(new JSONObject()), object.getArray("tags"));
+
+        JSONArray array = JSONArray.lazy("[1, \"two\", [3]]");
+        Assert.assertEquals("two", array.set(1, "2"));
+        Assert.assertEquals(new JSONArray().$(3), array.remove(2));
+        Assert.assertTrue(array.contains(1));
+        Assert.assertEquals("[1,\"2\"]", array.toJson());
+    }
+
+    @Test
+    public void testOnlyAccessedValuesAreParsed() throws IOException {
+        // The duplicate key is only found when the nested object is parsed
+        JSONObject object = JSONObject.lazy("{\"good\":1,\n\"bad\":{\"x\":1,\n\"x\":2}}");
+        Assert.assertEquals(1, object.get("good"));
+        try {
+            object.get("bad");
+            Assert.fail("Expected a duplicate key error");
+        } catch (UncheckedIOException ex) {
+            Assert.assertEquals("Duplicate key \"x\" in object @ line 3 character 1", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testSyntaxErrors() throws IOException {
+        // Skipped values are still checked completely
+        testIncorrect("{\"a\":[1,2,]}", "Unexpected character ']' found @ line 1 character 11");
+        testIncorrect("{\"a\":{\"b\":tru}}", "Unexpected character '}', expected a 'e' @ line 1 character 14");
+        testIncorrect("{\"a\":{\"b\" 1}}", "Unexpected character '1', expected a colon @ line 1 character 11");
+        testIncorrect("{\"a\":[\"\\u12x4\"]}", "Invalid character for unicode character 'x' @ line 1 character 12");
+        testIncorrect("{\"a\":[[1] [2]]}", "Unexpected character '[', expected a a comma @ line 1 character 11");
+        testIncorrect("{\"a\":{\"b\":[1}}", "Unexpected character '}', expected a a comma @ line 1 character 13");
+        testIncorrect("{\"a\":[\"open", "Premature end of file found @ line 1 character 12");
+        testIncorrect("{\"a\":{\"b\":1 \"c\":2}}", "Unexpected character '\"', expected a a comma @ line 1 character 13");
+        testIncorrect("{\"a\":1.e5}", "Fraction part started, but no digits found @ line 1 character 8");
+    }
+
+    private static void testIncorrect(String json, String message) throws IOException {
+        try {
+            new JSONDecoder(json).lazy().parseValue();
+            Assert.fail("Expected an error for " + json);
+        } catch (JSONParseException ex) {
+            Assert.assertEquals(message, ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testDeepNesting() throws IOException {
+        StringBuilder json = new StringBuilder("{\"deep\":");
+        for (int ix = 0; ix < 100000; ix++) {
+            json.append("[{\"a\":");
+        }
+        json.append("1");
+        for (int ix = 0; ix < 100000; ix++) {
+            json.append("}]");
+        }
+        json.append(",\"shallow\":true}");
+
+        JSONObject object = JSONObject.lazy(json.toString());
+        Assert.assertEquals(true, object.get("shallow"));
+    }
+}
@@ -0,0 +1,137 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NDJSONTest {
+    private static final List<Object> RECORDS = Arrays.asList(new JSONObject().$("id", 1).$("text", "line\nbreak"),
+                                                              new JSONArray().$(1).$(new JSONObject()),
+                                                              "string",
+                                                              null,
+                                                              2.5,
+                                                              new JSONObject());
+
+    @Test
+    public void testRoundTrip() throws IOException, UnexpectedTypeException {
+        StringBuilder out = new StringBuilder();
+        JSONEncoder.encodeRecords(RECORDS, out);
+        String ndjson = out.toString();
+        Assert.assertEquals("{\"id\":1,\"text\":\"line\\nbreak\"}\n[1,{}]\n\"string\"\nnull\n2.5\n{}\n", ndjson);
+
+        StringBuilder single = new StringBuilder();
+        JSONEncoder encoder = new JSONEncoder(single);
+        for (Object record : RECORDS) {
+            encoder.writeRecord(record);
+        }
+        Assert.assertEquals(ndjson, single.toString());
+
+        List<Object> read = new ArrayList<>();
+        try (NDJSONReader reader = new NDJSONReader(new StringReader(ndjson))) {
+            while (reader.hasNext()) {
+                read.add(reader.readRecord());
+                Assert.assertEquals(read.size(), reader.getRecordNumber());
+            }
+            try {
+                reader.readRecord();
+                Assert.fail("Expected the end of the records");
+            } catch (NoSuchElementException e) {
+                // Expected
+            }
+        }
+        Assert.assertEquals(RECORDS, read);
+
+        byte[] bytes = ndjson.getBytes(StandardCharsets.UTF_8);
+        try (Stream<Object> stream = new NDJSONReader(new ByteArrayInputStream(bytes)).stream()) {
+            Assert.assertEquals(RECORDS, stream.collect(Collectors.toList()));
+        }
+
+        Path file = Files.createTempFile("records", ".ndjson");
+        try {
+            Files.write(file, bytes);
+            try (Stream<Object> stream = new NDJSONReader(file).stream()) {
+                Assert.assertEquals(RECORDS, stream.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBlankLinesAndConfiguredDecoder() throws IOException {
+        JSONDecoder decoder = new JSONDecoder("\n{\"a\":1}\r\n\n  {\"a\":2}\n\n").withKeyCache(new JSONKeyCache());
+        NDJSONReader reader = new NDJSONReader(decoder);
+        Assert.assertEquals(new JSONObject().$("a", 1), reader.next());
+        Assert.assertEquals(new JSONObject().$("a", 2), reader.next());
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testErrorsPerRecord() throws IOException {
+        NDJSONReader reader = new NDJSONReader(new StringReader("{\"a\":1}\n{\"a\":}\n[1,2\n\"last\"\n"));
+        Assert.assertEquals(new JSONObject().$("a", 1), reader.readRecord());
+
+        try {
+            reader.readRecord();
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Unexpected character '}' found in record 2 @ line 2 character 6", e.getMessage());
+            Assert.assertEquals(2, e.getRecordNumber());
+            Assert.assertEquals(2, e.getLineNumber());
+        }
+
+        // The unclosed array is only noticed on the next line, which starts the next record
+        try {
+            reader.next();
+            Assert.fail("Expected a parse exception");
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals(3, ((JSONParseException) e.getCause()).getRecordNumber());
+            Assert.assertEquals(4, ((JSONParseException) e.getCause()).getLineNumber());
+        }
+        Assert.assertEquals("last", reader.readRecord());
+        Assert.assertEquals(4, reader.getRecordNumber());
+        Assert.assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testTruncatedRecord() throws IOException {
+        String ndjson = "{\"id\":1}\n{\"id\":2\n  {\"id\":3}\n{\"id\":\n4}\n";
+        // Also with a buffer that is too small to keep the start of the line
+        for (int bufferSize : new int[] { 8192, 4 }) {
+            NDJSONReader reader = new NDJSONReader(new JSONDecoder(new StringReader(ndjson), bufferSize));
+            Assert.assertEquals(new JSONObject().$("id", 1), reader.readRecord());
+            try {
+                reader.readRecord();
+                Assert.fail("Expected a parse exception");
+            } catch (JSONParseException e) {
+                Assert.assertEquals(2, e.getRecordNumber());
+                Assert.assertEquals(3, e.getLineNumber());
+            }
+            Assert.assertEquals(new JSONObject().$("id", 3), reader.readRecord());
+            Assert.assertEquals(3, reader.getRecordNumber());
+
+            // A value that continues on the next line is still read as one record
+            Assert.assertEquals(new JSONObject().$("id", 4), reader.readRecord());
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoPrettyRecords() throws IOException, UnexpectedTypeException {
+        new JSONEncoder(new StringBuilder(), EnumSet.of(JSONEncoder.Options.PRETTY)).writeRecord(1);
+    }
+}
@@ -69,6 +69,46 @@ public class ObjectTest {
         }
     }
 
+    public static class B {
+        private final boolean active;
+        private final A a;
+
+        public B(boolean active, A a) {
+            this.active = active;
+            this.a = a;
+        }
+
+        public B(JSONObject object) throws UnexpectedTypeException {
+            if (!object.containsKey("isActive")) {
+                throw new UnexpectedTypeException("Missing isActive");
+            }
+            active = (Boolean) object.get("isActive");
+            a = object.getObject("a").as(A.class);
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public A getA() {
+            return a;
+        }
+
+        public static B getDefault() {
+            return new B(false, new A());
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("Not available");
+        }
+    }
+
+    static class Hidden {
+        public int getX() {
+            return 1;
+        }
+    }
+
     @Test
     public void testA() throws UnexpectedTypeException, IOException {
         A original = new A(3, "test", BigInteger.valueOf(1234567890L));
@@ -81,4 +121,39 @@ public class ObjectTest {
 
         Assert.assertEquals(original, result);
     }
+
+    @Test
+    public void testBinding() throws UnexpectedTypeException {
+        B original = new B(true, new A(1, "a", BigInteger.TEN));
+        JSONObject object = JSONObject.as(original);
+        // Static and failing getters are left out, the properties are sorted by name
+        Assert.assertEquals("{\"a\":{\"x\":1,\"y\":\"a\",\"z\":10},\"isActive\":true}", object.toJson());
+
+        B result = object.as(B.class);
+        Assert.assertTrue(result.isActive());
+        Assert.assertEquals(original.getA(), result.getA());
+        Assert.assertSame(ClassBinding.of(B.class), ClassBinding.of(B.class));
+
+        // Exceptions of the constructor are passed on
+        try {
+            new JSONObject().as(B.class);
+            Assert.fail("Expected an exception from the constructor");
+        } catch (UnexpectedTypeException e) {
+            Assert.assertEquals("Missing isActive", e.getMessage());
+        }
+
+        try {
+            object.as(String.class);
+            Assert.fail("Expected that a string can not be created");
+        } catch (UnexpectedTypeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Could not find a way to create a class java.lang.String"));
+        }
+
+        try {
+            JSONObject.as(new Hidden());
+            Assert.fail("Expected that the getters of a hidden class can not be used");
+        } catch (UnexpectedTypeException e) {
+            Assert.assertTrue(e.getMessage().contains(Hidden.class.getName()));
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelDecoderTest {
+    private static List<Object> createRecords(int count) {
+        Random random = new Random(count);
+        List<Object> records = new ArrayList<>();
+        for (int ix = 0; ix < count; ix++) {
+            records.add(new JSONObject().$("id", ix)
+                                        .$("text", "\u00e9\uD83D\uDE00 \"quoted\", [" + random.nextInt() + "] \\")
+                                        .$("nested", new JSONArray().$(new JSONObject().$("a", "}")).$(ix * 0.5))
+                                        .$("end", ix % 3 == 0 ? null : "]"));
+        }
+        records.add("last");
+        return records;
+    }
+
+    private static byte[] encodeRecords(List<Object> records) throws UnexpectedTypeException, IOException {
+        StringBuilder out = new StringBuilder();
+        JSONEncoder.encodeRecords(records, out);
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRecords() throws IOException, UnexpectedTypeException {
+        List<Object> records = createRecords(2000);
+        byte[] bytes = encodeRecords(records);
+
+        ParallelDecoder decoder = new ParallelDecoder().withChunkSize(1000).withKeyCache(new JSONKeyCache());
+        try (Stream<Object> stream = decoder.records(bytes)) {
+            Assert.assertEquals(records, stream.collect(Collectors.toList()));
+        }
+        try (Stream<Object> stream = decoder.records(ByteBuffer.allocateDirect(bytes.length).put(bytes))) {
+            Assert.assertEquals(0, stream.count());
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        try (Stream<Object> stream = decoder.records(direct)) {
+            Assert.assertEquals(records.size(), stream.unordered().count());
+        }
+
+        Path file = Files.createTempFile("records", ".ndjson");
+        try {
+            Files.write(file, bytes);
+            try (Stream<Object> stream = decoder.records(file)) {
+                Assert.assertEquals(records, stream.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testElements() throws IOException, UnexpectedTypeException {
+        JSONArray array = new JSONArray();
+        array.addAll(createRecords(2000));
+        byte[] bytes = ("\uFEFF \n" + JSONEncoder.toString(array) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        ParallelDecoder decoder = new ParallelDecoder().withChunkSize(1000);
+        try (Stream<Object> stream = decoder.elements(bytes)) {
+            Assert.assertEquals(array, stream.collect(Collectors.toList()));
+        }
+
+        Path file = Files.createTempFile("elements", ".json");
+        try {
+            Files.write(file, bytes);
+            try (Stream<Object> stream = decoder.elements(file)) {
+                Assert.assertEquals(array, stream.collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        // The blocks that are scanned for commas never start in the middle of an escape
+        JSONArray escapes = new JSONArray();
+        StringBuilder backslashes = new StringBuilder();
+        for (int ix = 0; ix < 50; ix++) {
+            escapes.add(backslashes.append('\\') + "\",[");
+        }
+        byte[] escaped = JSONEncoder.toString(escapes).getBytes(StandardCharsets.UTF_8);
+        try (Stream<Object> stream = new ParallelDecoder().withChunkSize(7).elements(escaped)) {
+            Assert.assertEquals(escapes, stream.collect(Collectors.toList()));
+        }
+
+        Assert.assertEquals(0, decoder.elements("[ ]".getBytes(StandardCharsets.UTF_8)).count());
+        Assert.assertEquals(1, decoder.elements("[{}]".getBytes(StandardCharsets.UTF_8)).count());
+    }
+
+    @Test
+    public void testErrors() throws IOException, UnexpectedTypeException {
+        List<Object> records = createRecords(100);
+        String valid = new String(encodeRecords(records), StandardCharsets.UTF_8);
+        byte[] bytes = (valid + "\n  {\"x\":1}\n {\"x\": tru}\n").getBytes(StandardCharsets.UTF_8);
+        try (Stream<Object> stream = new ParallelDecoder().withChunkSize(100).records(bytes)) {
+            stream.count();
+            Assert.fail("Expected a parse exception");
+        } catch (UncheckedIOException e) {
+            JSONParseException cause = (JSONParseException) e.getCause();
+            Assert.assertEquals("Unexpected character '}', expected a 'e' in record 103 @ line 104 character 11",
+                                cause.getMessage());
+        }
+
+        // Records are counted as values, not as lines
+        bytes = (valid + "{\"a\":1} {\"b\":2}\n{\"x\": tru}\n").getBytes(StandardCharsets.UTF_8);
+        try (Stream<Object> stream = new ParallelDecoder().withChunkSize(100).records(bytes)) {
+            stream.count();
+            Assert.fail("Expected a parse exception");
+        } catch (UncheckedIOException e) {
+            JSONParseException cause = (JSONParseException) e.getCause();
+            Assert.assertEquals("Unexpected character '}', expected a 'e' in record 104 @ line 103 character 10",
+                                cause.getMessage());
+        }
+
+        String elements = "[" + valid.replace('\n', ',') + "\n1,\n2 3]";
+        try (Stream<Object> stream = new ParallelDecoder().withChunkSize(100)
+                                                          .elements(elements.getBytes(StandardCharsets.UTF_8))) {
+            stream.count();
+            Assert.fail("Expected a parse exception");
+        } catch (UncheckedIOException e) {
+            JSONParseException cause = (JSONParseException) e.getCause();
+            Assert.assertEquals(103, cause.getRecordNumber());
+            Assert.assertEquals(3, cause.getLineNumber());
+            Assert.assertEquals(3, cause.getCharNumber());
+        }
+
+        // Without a complete array, the whole input is parsed to find the error
+        try {
+            new ParallelDecoder().elements("{\"a\":[1,2]}".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Unexpected character '{', expected a start of array @ line 1 character 1",
+                                e.getMessage());
+        }
+        try {
+            new ParallelDecoder().elements("[1,[2]".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Premature end of file found @ line 1 character 7", e.getMessage());
+        }
+    }
+}
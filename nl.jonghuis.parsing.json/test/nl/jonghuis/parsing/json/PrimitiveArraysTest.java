@@ -0,0 +1,104 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimitiveArraysTest {
+    private static JSONArray decode(String json) throws IOException {
+        return new JSONDecoder(json).primitiveArrays().parseArray();
+    }
+
+    @Test
+    public void testKinds() throws IOException, UnexpectedTypeException {
+        JSONArray ints = decode("[1, -2, 3]");
+        Assert.assertTrue(ints instanceof PrimitiveJSONArray.Ints);
+        Assert.assertEquals(new JSONArray().$(1).$(-2).$(3), ints);
+        Assert.assertEquals(-2.0, ints.getDouble(1), 0);
+
+        JSONArray longs = decode("[1, 12345678901, 1000000000]");
+        Assert.assertTrue(longs instanceof PrimitiveJSONArray.Longs);
+        Assert.assertEquals(new JSONDecoder("[1, 12345678901, 1000000000]").parseArray(), longs);
+        Assert.assertEquals(12345678901L, longs.getLong(1));
+
+        JSONArray doubles = decode("[0.5, 1e3, -2.25]");
+        Assert.assertTrue(doubles instanceof PrimitiveJSONArray.Doubles);
+        Assert.assertEquals(new JSONArray().$(0.5).$(1000.0).$(-2.25), doubles);
+        Assert.assertEquals(1000, doubles.getInt(1));
+        Assert.assertEquals(Integer.MAX_VALUE, decode("[3e9]").getInt(0));
+
+        // Integers that are mixed with decimal numbers keep their type
+        JSONArray mixed = decode("[1, 2.5, 12345678901]");
+        Assert.assertTrue(mixed instanceof PrimitiveJSONArray.Doubles);
+        Assert.assertEquals(new JSONDecoder("[1, 2.5, 12345678901]").parseArray(), mixed);
+        Assert.assertEquals(new JSONArray().$(1).$(2.5).$(12345678901L).hashCode(), mixed.hashCode());
+        Assert.assertEquals(Integer.valueOf(1), mixed.get(0));
+        Assert.assertEquals(new JSONDecoder("[12345678901]").parseArray().getInt(0), mixed.getInt(2));
+        Assert.assertEquals("[1,2.5,12345678901]", JSONEncoder.toString(mixed));
+
+        JSONObject object = new JSONDecoder("{\"values\": [ 1 , 2 ], \"empty\": []}").primitiveArrays().parseObject();
+        Assert.assertTrue(object.get("values") instanceof PrimitiveJSONArray.Ints);
+        Assert.assertEquals(new JSONArray(), object.get("empty"));
+    }
+
+    @Test
+    public void testFallback() throws IOException {
+        // Values that do not fit keep the types they would have had in a normal array
+        String[] arrays = { "[1, 2.5, 3, \"x\", 4]",
+                            "[1, 12345678901, null]",
+                            "[1, 2, 12345678901234567890]",
+                            "[2.5, 9007199254740993]",
+                            "[9007199254740993, 2.5]" };
+        for (String json : arrays) {
+            JSONArray array = decode(json);
+            Assert.assertFalse(array instanceof PrimitiveJSONArray);
+            Assert.assertEquals(new JSONDecoder(json).parseArray(), array);
+        }
+        Assert.assertEquals(new BigInteger("12345678901234567890"), decode("[1, 12345678901234567890]").get(1));
+
+        try {
+            decode("[1, 2");
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals("Premature end of file found @ line 1 character 6", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testList() throws Exception {
+        JSONArray array = decode("[3, 1, 2]");
+        Assert.assertEquals(3, array.size());
+        Assert.assertEquals(Arrays.asList(3, 1, 2), array.subList(0, 3));
+        Assert.assertEquals(1, array.indexOf(1));
+        Assert.assertTrue(array.contains(2));
+        Assert.assertEquals(Arrays.asList(3, 1, 2).hashCode(), array.hashCode());
+        Assert.assertEquals("[3,1,2]", array.toString());
+        Assert.assertEquals(6, array.stream().mapToInt(value -> (Integer) value).sum());
+
+        // Changes box the values first
+        Iterator<Object> iterator = array.iterator();
+        iterator.next();
+        iterator.remove();
+        array.add("x");
+        array.sort((a, b) -> a.toString().compareTo(b.toString()));
+        Assert.assertEquals(new JSONArray().$(1).$(2).$("x"), array);
+        Assert.assertEquals("[1,2,\"x\"]", JSONEncoder.toString(array));
+
+        JSONArray doubles = decode("[0.5, 1.5]");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(doubles);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Assert.assertEquals(new JSONArray().$(0.5).$(1.5), input.readObject());
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package nl.jonghuis.parsing.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TypedDecodingTest {
+    public enum Color {
+        RED,
+        GREEN
+    }
+
+    public static class Point {
+        private int x, y;
+
+        public int getX() {
+            return x;
+        }
+
+        public Point setX(int x) {
+            this.x = x;
+            return this;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public Point setY(int y) {
+            this.y = y;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Point) && (((Point) obj).x == x) && (((Point) obj).y == y);
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * x) + y;
+        }
+    }
+
+    public static class Shape {
+        private String name;
+        private boolean closed;
+        private long id;
+        private Color color;
+        private List<Point> points;
+        private Map<String, Integer> counts;
+        private double[] weights;
+        private Point[] corners;
+        private ObjectTest.A a;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        public void setClosed(boolean closed) {
+            this.closed = closed;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public Color getColor() {
+            return color;
+        }
+
+        public void setColor(Color color) {
+            this.color = color;
+        }
+
+        public List<Point> getPoints() {
+            return points;
+        }
+
+        public void setPoints(List<Point> points) {
+            this.points = points;
+        }
+
+        public Map<String, Integer> getCounts() {
+            return counts;
+        }
+
+        public void setCounts(Map<String, Integer> counts) {
+            this.counts = counts;
+        }
+
+        public double[] getWeights() {
+            return weights;
+        }
+
+        public void setWeights(double[] weights) {
+            this.weights = weights;
+        }
+
+        public Point[] getCorners() {
+            return corners;
+        }
+
+        public void setCorners(Point[] corners) {
+            this.corners = corners;
+        }
+
+        public ObjectTest.A getA() {
+            return a;
+        }
+
+        public void setA(ObjectTest.A a) {
+            this.a = a;
+        }
+    }
+
+    static class Hidden {
+        public void setX(int x) {
+        }
+    }
+
+    private static Type returnType(String getter) throws NoSuchMethodException {
+        return Shape.class.getMethod(getter).getGenericReturnType();
+    }
+
+    @Test
+    public void testBean() throws IOException, UnexpectedTypeException {
+        String json = "{\"name\": \"square\", \"closed\": true, \"id\": 12345678901, \"color\": \"GREEN\", "
+                      + "\"points\": [{\"x\": 1, \"y\": 2}, {\"y\": 3, \"unknown\": [1, {\"x\": 5}]}, null], "
+                      + "\"counts\": {\"a\": 1, \"b\": 2.5}, \"weights\": [0.5, 1, -2e2], "
+                      + "\"corners\": [{\"x\": -1}], \"a\": {\"x\": 4, \"y\": \"four\", \"z\": 40}, \"extra\": null}";
+        Shape shape = new JSONDecoder(json).parseValue(Shape.class);
+
+        Assert.assertEquals("square", shape.getName());
+        Assert.assertTrue(shape.isClosed());
+        Assert.assertEquals(12345678901L, shape.getId());
+        Assert.assertEquals(Color.GREEN, shape.getColor());
+        Assert.assertEquals(Arrays.asList(new Point().setX(1).setY(2), new Point().setY(3), null), shape.getPoints());
+        Assert.assertEquals(Integer.valueOf(2), shape.getCounts().get("b"));
+        Assert.assertArrayEquals(new double[] { 0.5, 1, -200 }, shape.getWeights(), 0);
+        Assert.assertArrayEquals(new Point[] { new Point().setX(-1) }, shape.getCorners());
+        Assert.assertEquals(new ObjectTest.A(4, "four", BigInteger.valueOf(40)), shape.getA());
+
+        // Enums are written with their name, and booleans can be read with the name of their getter
+        Shape again = new JSONDecoder(JSONEncoder.toString(shape)).parseValue(Shape.class);
+        Assert.assertTrue(again.isClosed());
+        Assert.assertEquals(Color.GREEN, again.getColor());
+        Assert.assertEquals(shape.getPoints(), again.getPoints());
+
+        // Decoding the same class again uses the cached binding
+        Assert.assertNull(new JSONDecoder("{}").parseValue(Shape.class).getName());
+        Assert.assertNull(new JSONDecoder("null").parseValue(Shape.class));
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecord() throws Exception {
+        // Records do not exist at the Java version of the tests, so the record is compiled here
+        Assume.assumeTrue(SourceVersion.latestSupported().ordinal() >= 16);
+        File output = folder.newFolder("records");
+        File source = new File(output, "Item.java");
+        String code = "public record Item(String name, int count, boolean active, double weight) {}\n";
+        Files.write(source.toPath(), code.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, source.getPath()));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { output.toURI().toURL() })) {
+            Class<?> item = loader.loadClass("Item");
+            String json = "{\"name\": \"z\", \"count\": 3, \"active\": true, \"weight\": 1.5}";
+            Object decoded = new JSONDecoder(json).parseValue(item);
+            Assert.assertEquals(decoded, new JSONDecoder(json).parseObject().as(item));
+            Assert.assertEquals(new JSONDecoder(json).parseObject(), JSONObject.as(decoded));
+
+            // Primitive components that are missing are left at zero on both ways of creating a record
+            Object partial = new JSONDecoder("{\"name\": \"z\"}").parseValue(item);
+            Assert.assertEquals(partial, new JSONObject().$("name", "z").as(item));
+            Assert.assertEquals(new JSONObject().$("name", "z").$("count", 0).$("active", false).$("weight", 0.0),
+                                JSONObject.as(partial));
+
+            // But a null value for them is an error
+            assertError("Unexpected character 'n', expected int @ line 1 character 11", "{\"count\": null}", item);
+            try {
+                new JSONObject().$("count", null).as(item);
+                Assert.fail("Expected an UnexpectedTypeException");
+            } catch (UnexpectedTypeException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testTypes() throws IOException, NoSuchMethodException {
+        Assert.assertEquals(Integer.valueOf(42), new JSONDecoder("42").parseValue(int.class));
+        Assert.assertEquals(Long.valueOf(1L << 40), new JSONDecoder("1099511627776").parseValue(Long.class));
+        Assert.assertEquals(Double.valueOf(1.5), new JSONDecoder("1.5").parseValue(double.class));
+        Assert.assertEquals(Character.valueOf('x'), new JSONDecoder("\"x\"").parseValue(char.class));
+        Assert.assertEquals(new BigDecimal("1.25"), new JSONDecoder("1.25").parseValue(BigDecimal.class));
+        Assert.assertEquals(BigInteger.TEN, new JSONDecoder("10").parseValue(BigInteger.class));
+        Assert.assertEquals(new BigInteger("12345678901234567890"),
+                            new JSONDecoder("12345678901234567890").parseValue(BigInteger.class));
+        Assert.assertEquals(BigInteger.TEN.pow(30), new JSONDecoder("1e30").parseValue(BigInteger.class));
+        Assert.assertEquals(new BigInteger("15000000000000000000"),
+                            new JSONDecoder("1.5e19").parseValue(BigInteger.class));
+        Assert.assertEquals(BigInteger.ONE.negate(), new JSONDecoder("-1.75").parseValue(BigInteger.class));
+        Assert.assertEquals(Boolean.FALSE, new JSONDecoder("false").parseValue(Boolean.class));
+        Assert.assertArrayEquals(new int[] { 1, 2, 3 }, new JSONDecoder("[1, 2 ,3]").parseValue(int[].class));
+        Assert.assertArrayEquals(new long[0], new JSONDecoder("[ ]").parseValue(long[].class));
+
+        // Numbers are converted like Number.intValue() and the like, so decimal numbers saturate
+        Assert.assertEquals(Integer.valueOf(Integer.MAX_VALUE), new JSONDecoder("3e9").parseValue(int.class));
+        Assert.assertEquals(new JSONDecoder("3e9").parseNumber().intValue(), new JSONDecoder("3e9").parseInt());
+        Assert.assertEquals(Short.valueOf((short) -1), new JSONDecoder("3e9").parseValue(short.class));
+        Assert.assertEquals(Byte.valueOf((byte) 0), new JSONDecoder("-1e10").parseValue(byte.class));
+        Assert.assertEquals(Integer.valueOf(-1294967296), new JSONDecoder("3000000000").parseValue(int.class));
+        Assert.assertArrayEquals(new int[] { Integer.MIN_VALUE, 1 },
+                                 new JSONDecoder("[-1e20, 1.5]").parseValue(int[].class));
+        Assert.assertArrayEquals(new String[] { "a", null },
+                                 new JSONDecoder("[\"a\", null]").parseValue(String[].class));
+        Assert.assertEquals(new JSONArray().$(1).$("a"), new JSONDecoder("[1, \"a\"]").parseValue(Object.class));
+        Assert.assertEquals(new JSONObject().$("a", 1), new JSONDecoder("{\"a\": 1}").parseValue(JSONObject.class));
+
+        Object points = new JSONDecoder("[{\"x\": 1}]").parseValue(returnType("getPoints"));
+        Assert.assertEquals(Collections.singletonList(new Point().setX(1)), points);
+        Assert.assertEquals(Collections.singleton("a"), new JSONDecoder("[\"a\", \"a\"]").parseValue(Set.class));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        assertError("Unexpected character '\"', expected a number @ line 1 character 8",
+                    "{\"id\": \"x\"}",
+                    Shape.class);
+        assertError("Unexpected character 'n', expected a number @ line 1 character 5", "[1, null]", int[].class);
+        assertError("Unexpected character 'n', expected int @ line 1 character 7", "{\"x\": null}", Point.class);
+        assertError("Unexpected character '3', expected a start of string @ line 2 character 11",
+                    "[{\"x\": 1},\n {\"y\": 2, 3}]",
+                    Point[].class);
+        assertError("Unknown constant \"BLUE\" of nl.jonghuis.parsing.json.TypedDecodingTest$Color "
+                    + "@ line 1 character 7",
+                    "\"BLUE\"",
+                    Color.class);
+        assertError("Could not find a way to create a nl.jonghuis.parsing.json.TypedDecodingTest$Hidden "
+                    + "@ line 1 character 1",
+                    "{\"x\": 1}",
+                    Hidden.class);
+        assertError("Premature end of file found @ line 1 character 14", "{\"name\": \"a\",", Shape.class);
+    }
+
+    private static void assertError(String expected, String json, Class<?> type) throws IOException {
+        try {
+            new JSONDecoder(json).parseValue(type);
+            Assert.fail("Expected a parse exception");
+        } catch (JSONParseException e) {
+            Assert.assertEquals(expected, e.getMessage());
+        }
+    }
+}